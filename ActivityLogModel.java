@@ -0,0 +1,288 @@
+// ActivityLogModel.java
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+import java.util.zip.GZIPInputStream;
+
+// Bounded list model behind the Activity Log view.
+// Keeps the last N live lines in a ring buffer; older history is paged in on demand and shown above the
+// live lines. Must only be used on the EDT.
+// History is read lazily on a background thread: backwards from where the log file ended when the model was
+// created, then through the rotated segments that existed then, newest first.
+class ActivityLogModel extends AbstractListModel<String> {
+    private static final long serialVersionUID = 1L;
+    private static final int READ_CHUNK = 8192;
+
+    private final int capacity;
+    private final String[] lines;
+    private int head, size;
+
+    // Lines paged in, oldest first, bounded by capacity as well
+    private final List<String> olderLines = new ArrayList<>();
+    private final transient ExecutorService reader;
+    private final transient HistoryReader history;
+    private boolean moreHistory = true;
+    private boolean loading;
+    private transient Runnable loadStateListener;
+
+    // rotator may be null when the log is not rotated
+    public ActivityLogModel(int capacity, File logFile, LogRotator rotator) {
+        this.capacity = capacity;
+        this.lines = new String[capacity];
+        // Only the length is taken here: lines this session writes after it are already shown live
+        this.history = new HistoryReader(logFile, logFile != null ? logFile.length() : 0, rotator);
+        this.reader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "USB-Log-History");
+            t.setDaemon(true);
+            return t;
+        });
+        reader.execute(history::open);
+    }
+
+    @Override
+    public int getSize() {
+        return olderLines.size() + size;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        int older = olderLines.size();
+        if (index < older) return olderLines.get(index);
+        return lines[(head + index - older) % capacity];
+    }
+
+    // Add a live line, dropping the oldest live line when full
+    public void append(String line) {
+        if (size == capacity) {
+            lines[head] = null;
+            head = (head + 1) % capacity;
+            size--;
+            int removed = olderLines.size();
+            fireIntervalRemoved(this, removed, removed);
+        }
+        lines[(head + size) % capacity] = line;
+        size++;
+        int added = getSize() - 1;
+        fireIntervalAdded(this, added, added);
+    }
+
+    public void clear() {
+        int oldSize = getSize();
+        Arrays.fill(lines, null);
+        head = size = 0;
+        olderLines.clear();
+        if (oldSize > 0) fireIntervalRemoved(this, 0, oldSize - 1);
+        fireLoadStateChanged();
+    }
+
+    // Called on the EDT whenever canLoadOlder() may have changed
+    public void setLoadStateListener(Runnable listener) {
+        this.loadStateListener = listener;
+    }
+
+    // True while there may be unshown history, room to show it, and no page is being read
+    public boolean canLoadOlder() {
+        return moreHistory && !loading && olderLines.size() < capacity;
+    }
+
+    // Read up to count older lines in the background and add them above the current ones; done gets the
+    // number added, on the EDT
+    public void loadOlder(int count, IntConsumer done) {
+        if (!canLoadOlder()) {
+            done.accept(0);
+            return;
+        }
+        int wanted = Math.min(count, capacity - olderLines.size());
+        loading = true;
+        fireLoadStateChanged();
+        reader.execute(() -> {
+            List<String> page = history.readPage(wanted);
+            boolean more = history.hasMore();
+            SwingUtilities.invokeLater(() -> {
+                loading = false;
+                moreHistory = more;
+                int take = Math.min(page.size(), capacity - olderLines.size());
+                List<String> added = page.subList(page.size() - take, page.size());
+                olderLines.addAll(0, added);
+                if (take > 0) fireIntervalAdded(this, 0, take - 1);
+                fireLoadStateChanged();
+                done.accept(take);
+            });
+        });
+    }
+
+    private void fireLoadStateChanged() {
+        if (loadStateListener != null) loadStateListener.run();
+    }
+
+    // Source of history pages; only used on the reader thread
+    private static class HistoryReader {
+        private final File logFile;
+        private final long logLength;
+        private final LogRotator rotator;
+
+        // The file being read backwards and the offset before which its unread lines end
+        private FileChannel channel;
+        private String channelName;
+        private long offset;
+        // Rotated segments not read yet, oldest first
+        private final List<File> segments = new ArrayList<>();
+        // Tail of a compressed segment, which cannot be read backwards, oldest first
+        private final List<String> decompressed = new ArrayList<>();
+
+        HistoryReader(File logFile, long logLength, LogRotator rotator) {
+            this.logFile = logFile;
+            this.logLength = logLength;
+            this.rotator = rotator;
+        }
+
+        // Keep the log open so it can still be read after the logger rotates it away. If it was rotated
+        // before this ran, the file is shorter now and its old content is among the segments listed next.
+        void open() {
+            if (logFile != null && logLength > 0) {
+                try {
+                    FileChannel file = FileChannel.open(logFile.toPath(), StandardOpenOption.READ);
+                    if (file.size() >= logLength) {
+                        channel = file;
+                        channelName = logFile.getName();
+                        offset = logLength;
+                    } else {
+                        file.close();
+                    }
+                } catch (IOException e) {
+                    decompressed.add("Unable to read " + logFile.getName() + ": " + e.getMessage());
+                }
+            }
+            if (rotator != null) segments.addAll(rotator.listSegments());
+        }
+
+        boolean hasMore() {
+            return channel != null || !decompressed.isEmpty() || !segments.isEmpty();
+        }
+
+        // Up to count lines ending where the previous page started, oldest first
+        List<String> readPage(int count) {
+            List<String> page = new ArrayList<>();
+            while (page.size() < count && hasMore()) {
+                if (!decompressed.isEmpty()) {
+                    int take = Math.min(count - page.size(), decompressed.size());
+                    List<String> tail = decompressed.subList(decompressed.size() - take, decompressed.size());
+                    page.addAll(0, tail);
+                    tail.clear();
+                } else if (channel != null) {
+                    List<String> read = new ArrayList<>();
+                    try {
+                        offset = readLinesBefore(channel, offset, count - page.size(), read);
+                    } catch (IOException e) {
+                        read.add("Unable to read " + channelName + ": " + e.getMessage());
+                        offset = 0;
+                    }
+                    page.addAll(0, read);
+                    if (offset == 0) closeChannel();
+                } else {
+                    openSegment(segments.remove(segments.size() - 1), count);
+                }
+            }
+            return page;
+        }
+
+        // A listed segment may have been compressed or deleted by retention since
+        private void openSegment(File segment, int maxLines) {
+            if (!segment.isFile() && !segment.getName().endsWith(".gz")) segment = new File(segment.getPath() + ".gz");
+            if (!segment.isFile()) return;
+            try {
+                if (segment.getName().endsWith(".gz")) {
+                    readTail(segment, maxLines, decompressed);
+                } else {
+                    channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ);
+                    channelName = segment.getName();
+                    offset = channel.size();
+                }
+            } catch (IOException e) {
+                decompressed.add("Unable to read " + segment.getName() + ": " + e.getMessage());
+            }
+        }
+
+        private void closeChannel() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+            channel = null;
+        }
+    }
+
+    // The last maxLines lines of a compressed segment, oldest first
+    private static void readTail(File segment, int maxLines, List<String> out) throws IOException {
+        ArrayDeque<String> tail = new ArrayDeque<>(maxLines);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(segment), 64 * 1024), LogEntry.CHARSET))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                if (tail.size() == maxLines) tail.removeFirst();
+                tail.addLast(line);
+            }
+        }
+        out.addAll(tail);
+    }
+
+    // Read up to maxLines complete lines ending at offset, oldest first; returns the new offset
+    private static long readLinesBefore(FileChannel file, long offset, int maxLines, List<String> out) throws IOException {
+        byte[] chunk = new byte[READ_CHUNK];
+        byte[] pending = new byte[0];
+        long position = offset;
+        List<String> reversed = new ArrayList<>();
+
+        while (position > 0 && reversed.size() < maxLines) {
+            int length = (int) Math.min(READ_CHUNK, position);
+            position -= length;
+            readFully(file, chunk, length, position);
+
+            byte[] data = new byte[length + pending.length];
+            System.arraycopy(chunk, 0, data, 0, length);
+            System.arraycopy(pending, 0, data, length, pending.length);
+
+            int end = data.length;
+            for (int i = data.length - 1; i >= 0 && reversed.size() < maxLines; i--) {
+                if (data[i] != '\n') continue;
+                addLine(data, i + 1, end, reversed);
+                end = i;
+            }
+            // Bytes before the first newline belong to a line that starts in an earlier chunk
+            pending = Arrays.copyOf(data, end);
+        }
+        if (position == 0 && pending.length > 0 && reversed.size() < maxLines) {
+            addLine(pending, 0, pending.length, reversed);
+            pending = new byte[0];
+        }
+
+        for (int i = reversed.size() - 1; i >= 0; i--) out.add(reversed.get(i));
+        return position + pending.length;
+    }
+
+    private static void readFully(FileChannel file, byte[] chunk, int length, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, length);
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, position + buffer.position()) < 0) throw new IOException("File shrank while reading");
+        }
+    }
+
+    private static void addLine(byte[] data, int start, int end, List<String> reversed) {
+        if (end > start && data[end - 1] == '\r') end--;
+        if (end > start) reversed.add(new String(data, start, end - start, LogEntry.CHARSET));
+    }
+}
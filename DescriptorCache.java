@@ -0,0 +1,117 @@
+// DescriptorCache.java
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Bounded LRU cache of USB descriptor data keyed by physical device identity.
+// Entries from a device that could not be opened expire after RETRY_MS, so the strings are read again
+// once access works (on Linux a fresh arrival often cannot be opened until udev has set permissions).
+class DescriptorCache {
+    static final long RETRY_MS = 5000;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    // String descriptors read from one device, plus the type derived from its class codes
+    static class Entry {
+        final String manufacturer;
+        final String product;
+        final String serialNumber;
+        final String deviceType;
+        // False if the strings could not be read and are placeholders
+        final boolean complete;
+
+        Entry(String manufacturer, String product, String serialNumber, String deviceType) {
+            this(manufacturer, product, serialNumber, deviceType, true);
+        }
+
+        Entry(String manufacturer, String product, String serialNumber, String deviceType, boolean complete) {
+            this.manufacturer = manufacturer;
+            this.product = product;
+            this.serialNumber = serialNumber;
+            this.deviceType = deviceType;
+            this.complete = complete;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+    // System.nanoTime() after which an incomplete entry is read again
+    private final Map<String, Long> retryAt = new HashMap<>();
+    private long hits, misses, evictions;
+
+    public DescriptorCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DescriptorCache.Entry> eldest) {
+                if (size() <= DescriptorCache.this.maxEntries) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    // Identity of a device as plugged in: bus, port path, VID:PID and bcdDevice. Built in sb, which a scan
+    // reuses for every device; only the returned String is new.
+    static String identityKey(StringBuilder sb, int bus, ByteBuffer portPath, int portCount, int vendorId, int productId, int bcdDevice) {
+        sb.setLength(0);
+        sb.append(bus).append('-');
+        for (int i = 0; i < portCount; i++) {
+            if (i > 0) sb.append('.');
+            sb.append(portPath.get(i) & 0xFF);
+        }
+        sb.append('/');
+        appendHex4(sb, vendorId).append(':');
+        appendHex4(sb, productId).append('/');
+        appendHex4(sb, bcdDevice);
+        return sb.toString();
+    }
+
+    // Four upper-case hex digits, like %04X
+    static StringBuilder appendHex4(StringBuilder sb, int value) {
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            sb.append(HEX_DIGITS[(value >>> shift) & 0xF]);
+        }
+        return sb;
+    }
+
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.complete && System.nanoTime() - retryAt.get(key) >= 0) {
+            invalidate(key);
+            entry = null;
+        }
+        if (entry != null) hits++; else misses++;
+        return entry;
+    }
+
+    public synchronized void put(String key, Entry entry) {
+        entries.put(key, entry);
+        if (entry.complete) retryAt.remove(key);
+        else retryAt.put(key, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETRY_MS));
+    }
+
+    public synchronized void invalidate(String key) {
+        entries.remove(key);
+        retryAt.remove(key);
+    }
+
+    // Drop every entry whose device was not seen in the latest full scan
+    public synchronized void retainOnly(Collection<String> presentKeys) {
+        HashSet<String> present = new HashSet<>(presentKeys);
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext(); ) {
+            if (!present.contains(it.next())) it.remove();
+        }
+        retryAt.keySet().retainAll(entries.keySet());
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public int getMaxEntries() { return maxEntries; }
+}
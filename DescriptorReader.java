@@ -0,0 +1,186 @@
+// DescriptorReader.java
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Reads descriptors of several devices at once, off the scanning thread, so one device that is slow to answer
+// control transfers cannot hold up the others. Uses virtual threads where the JDK has them (looked up
+// reflectively, as the code still builds for Java 8) with at most MAX_CONCURRENT_READS reads at a time,
+// otherwise a pool of PLATFORM_THREADS platform threads.
+// A read that misses its deadline keeps running, fills the cache when it finishes and then calls the
+// late-read listener, so the device can be reported with its real strings by another scan.
+// A device that times out QUARANTINE_AFTER times in a row is left alone for QUARANTINE_MS.
+class DescriptorReader {
+    static final long READ_TIMEOUT_MS = 2000;
+    private static final int MAX_CONCURRENT_READS = 8;
+    private static final int PLATFORM_THREADS = 4;
+    private static final int QUARANTINE_AFTER = 3;
+    private static final long QUARANTINE_MS = 5 * 60 * 1000;
+
+    // One read of one device, shared by every scan that asks for that device while it runs
+    static final class Read {
+        final String key;
+        final CompletableFuture<DescriptorCache.Entry> result = new CompletableFuture<>();
+        volatile long startedNanos;
+        // Whether this read has already counted as a timeout
+        boolean struck;
+        // Set when a caller stopped waiting for this read
+        volatile boolean abandoned;
+
+        Read(String key) {
+            this.key = key;
+        }
+
+        boolean isDone() {
+            return result.isDone();
+        }
+    }
+
+    private static final class Strikes {
+        int count;
+        long quarantinedUntilNanos;
+    }
+
+    private final DescriptorCache cache;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Map<String, Read> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Strikes> strikes = new ConcurrentHashMap<>();
+    private volatile Runnable lateReadListener;
+
+    DescriptorReader(DescriptorCache cache) {
+        this.cache = cache;
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+            this.executor = virtual;
+            this.permits = new Semaphore(MAX_CONCURRENT_READS);
+        } else {
+            // The pool size is the limit
+            this.permits = new Semaphore(PLATFORM_THREADS);
+            AtomicInteger counter = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(PLATFORM_THREADS, r -> {
+                Thread t = new Thread(r, "USB-Descriptor-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        MonitorMetrics.registerGauge("libusb.reads.inflight", inFlight::size);
+        MonitorMetrics.registerGauge("libusb.quarantined", this::getQuarantinedCount);
+    }
+
+    // The read running for this device, or a new one running task; release always runs exactly once,
+    // after the task or straight away if the task is not needed
+    Read start(String key, Supplier<DescriptorCache.Entry> task, Runnable release) {
+        Read read = new Read(key);
+        Read running = inFlight.putIfAbsent(key, read);
+        if (running != null) {
+            release.run();
+            return running;
+        }
+        executor.execute(() -> {
+            boolean late = false;
+            try {
+                permits.acquire();
+                try {
+                    read.startedNanos = System.nanoTime();
+                    DescriptorCache.Entry entry = task.get();
+                    cache.put(key, entry);
+                    // A late answer still fills the cache but does not undo the timeout
+                    if (System.nanoTime() - read.startedNanos < TimeUnit.MILLISECONDS.toNanos(READ_TIMEOUT_MS)) {
+                        strikes.remove(key);
+                    }
+                    read.result.complete(entry);
+                    late = read.abandoned;
+                } finally {
+                    permits.release();
+                }
+            } catch (Throwable e) {
+                read.result.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, read);
+                release.run();
+            }
+            Runnable listener = lateReadListener;
+            if (late && listener != null) listener.run();
+        });
+        return read;
+    }
+
+    // The descriptors, or null if the read has not finished by the deadline (read.isDone() is false)
+    // or failed (read.isDone() is true)
+    DescriptorCache.Entry await(Read read, long deadlineNanos) {
+        try {
+            return read.result.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            read.abandoned = true;
+            // Finished just now, before the read could see that nobody is waiting any more
+            if (read.result.isDone() && !read.result.isCompletedExceptionally()) return read.result.join();
+            timedOut(read);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.err.println("Error reading descriptors of " + read.key + ": " + e.getCause());
+            return null;
+        }
+    }
+
+    // Called on a reader thread after a read that a caller gave up on has finished and filled the cache
+    void setLateReadListener(Runnable listener) {
+        this.lateReadListener = listener;
+    }
+
+    public boolean isQuarantined(String key) {
+        Strikes s = strikes.get(key);
+        return s != null && s.quarantinedUntilNanos - System.nanoTime() > 0;
+    }
+
+    public long getQuarantinedCount() {
+        long now = System.nanoTime();
+        long count = 0;
+        for (Strikes s : strikes.values()) {
+            if (s.quarantinedUntilNanos - now > 0) count++;
+        }
+        return count;
+    }
+
+    // Counts against the device only if the read itself ran for the whole timeout, not while it was queued
+    private void timedOut(Read read) {
+        long started = read.startedNanos;
+        if (started == 0 || System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(READ_TIMEOUT_MS)) return;
+        synchronized (read) {
+            if (read.struck) return;
+            read.struck = true;
+        }
+        MonitorMetrics.increment("libusb.read.timeouts");
+        Strikes s = strikes.computeIfAbsent(read.key, k -> new Strikes());
+        synchronized (s) {
+            s.count++;
+            if (s.count >= QUARANTINE_AFTER) {
+                s.quarantinedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(QUARANTINE_MS);
+                // One more timeout after the quarantine ends puts it straight back
+                s.count = QUARANTINE_AFTER - 1;
+                System.err.println("USB device " + read.key + " keeps timing out, skipping descriptor reads for "
+                        + QUARANTINE_MS / 60000 + " minutes");
+            }
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() on Java 21+, null before
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
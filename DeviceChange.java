@@ -0,0 +1,37 @@
+// DeviceChange.java
+
+// One added, removed or changed device between two snapshots
+final class DeviceChange {
+    enum Kind { ADDED, REMOVED, CHANGED }
+
+    private final Kind kind;
+    private final long generation;
+    private final String deviceId;
+    private final USBMonitor.DeviceInfo previous;
+    private final USBMonitor.DeviceInfo current;
+
+    DeviceChange(Kind kind, long generation, String deviceId,
+                 USBMonitor.DeviceInfo previous, USBMonitor.DeviceInfo current) {
+        this.kind = kind;
+        this.generation = generation;
+        this.deviceId = deviceId;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public Kind getKind() { return kind; }
+    // Generation of the snapshot that first contained this change
+    public long getGeneration() { return generation; }
+    public String getDeviceId() { return deviceId; }
+    // Null for ADDED
+    public USBMonitor.DeviceInfo getPrevious() { return previous; }
+    // Null for REMOVED
+    public USBMonitor.DeviceInfo getCurrent() { return current; }
+    // The device this change is about: current if present, else previous
+    public USBMonitor.DeviceInfo getDevice() { return current != null ? current : previous; }
+
+    @Override
+    public String toString() {
+        return kind + " " + deviceId + " @" + generation;
+    }
+}
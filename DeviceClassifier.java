@@ -0,0 +1,180 @@
+// DeviceClassifier.java
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Assigns each device a category (e.g. hid, video, storage) from rules in a properties file:
+//
+//   categories=hid,video,audio,storage     evaluation order, first wins on ties
+//   input.categories=hid,video,audio       categories that count as input devices
+//   hid.types=hid,human interface          keywords matched in the device type
+//   hid.keywords=keyboard,mouse            keywords matched in the product name
+//
+// Device types come from the USB class codes in the device and interface descriptors, so a type rule
+// beats a product-name rule for the category. A device is an input device if either its type or its product
+// name matches an input category, as with the original isInputDevice(). All keywords of each kind are matched in one pass, and the result is cached
+// per device record, so a device is only classified the first time it is seen.
+class DeviceClassifier {
+    static final String CONFIG_FILE = "device_classes.properties";
+    private static final int CACHE_LIMIT = 4096;
+
+    // Matches the original isInputDevice() heuristics: video and audio class codes alone do not make an
+    // input device (speakers, DACs, capture cards), only the product keywords do
+    private static final String DEFAULT_RULES =
+        "categories=hid,video,audio,storage,hub\n" +
+        "input.categories=hid,video,audio\n" +
+        "hid.types=hid,human interface,input\n" +
+        "hid.keywords=keyboard,mouse,controller,gamepad,joystick,touchpad\n" +
+        "video.keywords=webcam,camera\n" +
+        "audio.keywords=microphone\n" +
+        "storage.types=mass storage\n" +
+        "hub.types=hub\n";
+
+    private static volatile DeviceClassifier defaultClassifier;
+
+    private final String[] categories;
+    private final boolean[] inputCategories;
+    private final KeywordMatcher typeMatcher;
+    private final KeywordMatcher productMatcher;
+    private final Map<USBMonitor.DeviceInfo, Result> cache = new ConcurrentHashMap<>();
+
+    private static final class Result {
+        final int index;
+        final boolean input;
+
+        Result(int index, boolean input) {
+            this.index = index;
+            this.input = input;
+        }
+    }
+
+    public DeviceClassifier(Properties rules) {
+        this.categories = list(rules.getProperty("categories")).toArray(new String[0]);
+        Set<String> input = new HashSet<>(list(rules.getProperty("input.categories")));
+        this.inputCategories = new boolean[categories.length];
+
+        List<String> types = new ArrayList<>();
+        List<Integer> typeValues = new ArrayList<>();
+        List<String> keywords = new ArrayList<>();
+        List<Integer> keywordValues = new ArrayList<>();
+        for (int i = 0; i < categories.length; i++) {
+            inputCategories[i] = input.contains(categories[i]);
+            for (String type : list(rules.getProperty(categories[i] + ".types"))) {
+                types.add(type);
+                typeValues.add(i);
+            }
+            for (String keyword : list(rules.getProperty(categories[i] + ".keywords"))) {
+                keywords.add(keyword);
+                keywordValues.add(i);
+            }
+        }
+        this.typeMatcher = new KeywordMatcher(types, toArray(typeValues));
+        this.productMatcher = new KeywordMatcher(keywords, toArray(keywordValues));
+    }
+
+    // The classifier used by DeviceInfo: device_classes.properties if present, else the built-in rules
+    static DeviceClassifier getDefault() {
+        DeviceClassifier classifier = defaultClassifier;
+        if (classifier == null) {
+            synchronized (DeviceClassifier.class) {
+                if (defaultClassifier == null) defaultClassifier = loadDefault();
+                classifier = defaultClassifier;
+            }
+        }
+        return classifier;
+    }
+
+    // Replace the rules, e.g. after editing the configuration; cached results go with the old instance
+    static void setDefault(DeviceClassifier classifier) {
+        defaultClassifier = classifier;
+    }
+
+    static DeviceClassifier load(File file) throws IOException {
+        Properties rules = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            rules.load(in);
+        }
+        return new DeviceClassifier(rules);
+    }
+
+    static DeviceClassifier builtIn() {
+        Properties rules = new Properties();
+        try {
+            rules.load(new StringReader(DEFAULT_RULES));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return new DeviceClassifier(rules);
+    }
+
+    // Category name, or null if no rule matches
+    public String classify(USBMonitor.DeviceInfo device) {
+        int index = classifyCached(device).index;
+        return index < 0 ? null : categories[index];
+    }
+
+    public boolean isInputDevice(USBMonitor.DeviceInfo device) {
+        return classifyCached(device).input;
+    }
+
+    public List<String> getCategories() {
+        return Arrays.asList(categories);
+    }
+
+    private Result classifyCached(USBMonitor.DeviceInfo device) {
+        Result cached = cache.get(device);
+        if (cached != null) return cached;
+
+        int typeIndex = typeMatcher.minValue(device.getDeviceType());
+        int productIndex = productMatcher.minValue(device.getProductName());
+        int index = typeIndex != Integer.MAX_VALUE ? typeIndex : productIndex;
+        Result result = new Result(index == Integer.MAX_VALUE ? -1 : index,
+                isInputCategory(typeIndex) || isInputCategory(productIndex));
+        if (cache.size() >= CACHE_LIMIT) cache.clear();
+        cache.put(device, result);
+        return result;
+    }
+
+    private boolean isInputCategory(int index) {
+        return index != Integer.MAX_VALUE && inputCategories[index];
+    }
+
+    private static DeviceClassifier loadDefault() {
+        File file = new File(CONFIG_FILE);
+        if (file.isFile()) {
+            try {
+                return load(file);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Unable to load " + CONFIG_FILE + ", using built-in rules: " + e.getMessage());
+            }
+        }
+        return builtIn();
+    }
+
+    // Comma-separated list, trimmed and lower-cased
+    private static List<String> list(String value) {
+        List<String> items = new ArrayList<>();
+        if (value == null) return items;
+        for (String item : value.split(",")) {
+            item = item.trim().toLowerCase();
+            if (!item.isEmpty()) items.add(item);
+        }
+        return items;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) result[i] = values.get(i);
+        return result;
+    }
+}
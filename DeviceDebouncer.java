@@ -0,0 +1,206 @@
+// DeviceDebouncer.java
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Per-device state machine between snapshot changes and listener notifications.
+// A connect or disconnect is only announced once the device has stayed that way for the debounce window,
+// so a cable bounce (gone and back within the window) produces no events at all, or one "changed" event
+// if the device came back with different details. A device with flapTransitions connects/disconnects
+// within flapWindow is marked as flapping: listeners get one onDeviceFlapping summary, further bounces are
+// swallowed, and once it has been quiet for flapWindow its final state is announced.
+class DeviceDebouncer {
+    // Receives the events that survive debouncing; called while holding the lock given to the constructor
+    interface Output {
+        void connected(USBMonitor.DeviceInfo device);
+        void disconnected(USBMonitor.DeviceInfo device);
+        void changed(USBMonitor.DeviceInfo previous, USBMonitor.DeviceInfo current);
+        void flapping(USBMonitor.DeviceInfo device, int transitions, long windowMillis);
+    }
+
+    private static final class State {
+        // What listeners were last told: non-null means connected
+        USBMonitor.DeviceInfo announced;
+        // What the latest change says: null means gone
+        USBMonitor.DeviceInfo actual;
+        // When actual is announced, 0 if nothing is pending
+        long deadline;
+        boolean flapping;
+        // Connect/disconnect times, as a ring of the last flapTransitions
+        long[] transitions;
+        int transitionCount, nextTransition;
+        long lastTransition;
+        // Transitions since the last announcement, for the suppression count
+        int unannounced;
+    }
+
+    private final Object lock;
+    private final Output output;
+    private final Map<String, State> states = new HashMap<>();
+
+    private volatile long connectDebounceMillis = 0;
+    private volatile long disconnectDebounceMillis = 1500;
+    private volatile int flapTransitions = 6;
+    private volatile long flapWindowMillis = 30000;
+
+    // Guarded by lock
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> timerTask;
+    private long timerDeadline = Long.MAX_VALUE;
+
+    DeviceDebouncer(Object lock, Output output) {
+        this.lock = lock;
+        this.output = output;
+    }
+
+    // A window of 0 announces immediately; flapTransitions of 0 turns flap detection off
+    public void configure(long connectDebounceMillis, long disconnectDebounceMillis, int flapTransitions, long flapWindowMillis) {
+        if (connectDebounceMillis < 0 || disconnectDebounceMillis < 0 || flapTransitions < 0 || flapWindowMillis < 0) {
+            throw new IllegalArgumentException("Debounce settings must not be negative");
+        }
+        synchronized (lock) {
+            this.connectDebounceMillis = connectDebounceMillis;
+            this.disconnectDebounceMillis = disconnectDebounceMillis;
+            this.flapTransitions = flapTransitions;
+            this.flapWindowMillis = flapWindowMillis;
+            states.clear();
+        }
+    }
+
+    // Caller holds the lock
+    public void submit(DeviceChange change) {
+        long now = now();
+        submit(change, now);
+        schedule(expire(now));
+    }
+
+    // Forget all devices, e.g. when monitoring stops
+    public void clear() {
+        synchronized (lock) {
+            states.clear();
+            if (timerTask != null) timerTask.cancel(false);
+            timerTask = null;
+            timerDeadline = Long.MAX_VALUE;
+        }
+    }
+
+    // Core of submit() with an explicit clock, so event sequences can be replayed deterministically
+    void submit(DeviceChange change, long now) {
+        State state = states.get(change.getDeviceId());
+        if (state == null) {
+            state = new State();
+            // Listeners already know about a device that is removed or changed
+            state.announced = change.getPrevious();
+            state.transitions = new long[Math.max(1, flapTransitions)];
+            states.put(change.getDeviceId(), state);
+        }
+        state.actual = change.getCurrent();
+
+        if (change.getKind() == DeviceChange.Kind.CHANGED) {
+            if (state.deadline == 0 && !state.flapping) announce(state);
+            return;
+        }
+
+        state.lastTransition = now;
+        state.unannounced++;
+        state.transitions[state.nextTransition] = now;
+        state.nextTransition = (state.nextTransition + 1) % state.transitions.length;
+        if (state.transitionCount < state.transitions.length) state.transitionCount++;
+
+        if (state.flapping) {
+            state.deadline = now + flapWindowMillis;
+            return;
+        }
+        if (flapTransitions > 0 && state.transitionCount == flapTransitions
+                && now - state.transitions[state.nextTransition] <= flapWindowMillis) {
+            // The oldest of the last flapTransitions transitions is inside the window
+            state.flapping = true;
+            state.deadline = now + flapWindowMillis;
+            MonitorMetrics.increment("events.flapping");
+            output.flapping(change.getDevice(), flapTransitions, flapWindowMillis);
+            return;
+        }
+
+        long window = state.actual != null ? connectDebounceMillis : disconnectDebounceMillis;
+        if (window == 0) {
+            announce(state);
+        } else {
+            state.deadline = now + window;
+        }
+    }
+
+    // Announce every device whose deadline has passed; returns the next deadline, or Long.MAX_VALUE
+    long expire(long now) {
+        long next = Long.MAX_VALUE;
+        for (Iterator<State> it = states.values().iterator(); it.hasNext(); ) {
+            State state = it.next();
+            if (state.deadline != 0 && state.deadline <= now) {
+                state.flapping = false;
+                announce(state);
+            }
+            if (state.deadline != 0) {
+                next = Math.min(next, state.deadline);
+            } else if (state.actual == null && now - state.lastTransition > flapWindowMillis) {
+                // Gone and too long ago to count towards flapping
+                it.remove();
+            }
+        }
+        return next;
+    }
+
+    // Number of devices being tracked
+    int size() {
+        return states.size();
+    }
+
+    // Tell listeners the difference between what they know and the actual state
+    private void announce(State state) {
+        USBMonitor.DeviceInfo announced = state.announced;
+        USBMonitor.DeviceInfo actual = state.actual;
+        state.deadline = 0;
+        state.announced = actual;
+        int emitted = 1;
+        if (announced == null && actual != null) {
+            output.connected(actual);
+        } else if (announced != null && actual == null) {
+            output.disconnected(announced);
+        } else if (announced != null && !announced.equals(actual)) {
+            output.changed(announced, actual);
+        } else {
+            emitted = 0;
+        }
+        if (state.unannounced > emitted) MonitorMetrics.add("debounce.suppressed", state.unannounced - emitted);
+        state.unannounced = 0;
+    }
+
+    // Make sure the timer fires by the given deadline; caller holds the lock
+    private void schedule(long deadline) {
+        if (deadline == Long.MAX_VALUE || deadline >= timerDeadline) return;
+        if (timerTask != null) timerTask.cancel(false);
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "USB-Debounce-Thread");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        timerDeadline = deadline;
+        timerTask = timer.schedule(this::onTimer, Math.max(0, deadline - now()), TimeUnit.MILLISECONDS);
+    }
+
+    private void onTimer() {
+        synchronized (lock) {
+            timerTask = null;
+            timerDeadline = Long.MAX_VALUE;
+            schedule(expire(now()));
+        }
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+}
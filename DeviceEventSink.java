@@ -0,0 +1,12 @@
+// DeviceEventSink.java
+
+// Receiver of events produced by a DeviceEventSource.
+// Sources report arrivals and changes with rescanRequested(), so devices are always described by the
+// configured scan backends and a later scan does not see different details.
+interface DeviceEventSink {
+    // The device with the given ID went away
+    void deviceLeft(String deviceId);
+
+    // Re-enumerate all devices and report what changed; true if anything did
+    boolean rescanRequested();
+}
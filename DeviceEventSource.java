@@ -0,0 +1,13 @@
+// DeviceEventSource.java
+
+// Source of device arrival/removal notifications for USBMonitor
+interface DeviceEventSource {
+    // Name shown in the monitor's startup output
+    String getName();
+
+    // Start delivering events, false if this source is not supported here
+    boolean start(DeviceEventSink sink);
+
+    // Stop delivering events and release any threads
+    void stop();
+}
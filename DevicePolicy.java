@@ -0,0 +1,285 @@
+// DevicePolicy.java
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Allow/alert/deny rules for devices, compiled into lookup structures. One rule per line:
+//
+//   deny   vidpid=0781:5567              exact VID:PID
+//   alert  vidpid=046D:C000-C0FF         PID range of one vendor
+//   alert  vidpid=1000:0000-10FF:FFFF    any VID:PID range
+//   allow  vid=046D                      vendor
+//   allow  pid=C52B                      product ID of any vendor
+//   allow  serial=4C530001*              serial prefix, or the exact serial without '*'
+//   deny   type=mass storage             keyword in the device type
+//   alert  keyword=flash                 keyword in the product name
+//   default alert                        verdict when no rule matches (allow if omitted)
+//
+// The first matching rule wins, as in a firewall. Instead of trying rules one by one, every kind of
+// match has its own structure (hash maps, a sorted range table, a serial trie, keyword automata)
+// that returns the lowest matching rule number, so evaluation cost barely depends on the number of rules.
+final class DevicePolicy {
+    enum Verdict { ALLOW, ALERT, DENY }
+
+    // One line of the rule file
+    static final class Rule {
+        final Verdict verdict;
+        final int lineNumber;
+        final String text;
+
+        Rule(Verdict verdict, int lineNumber, String text) {
+            this.verdict = verdict;
+            this.lineNumber = lineNumber;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return lineNumber > 0 ? "line " + lineNumber + ": " + text : text;
+        }
+    }
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final Rule[] rules;
+    private final Rule defaultRule;
+
+    // Lowest rule number per packed VID:PID, vendor and product ID
+    private final Map<Integer, Integer> byVidPid = new HashMap<>();
+    private final Map<Integer, Integer> byVid = new HashMap<>();
+    private final Map<Integer, Integer> byPid = new HashMap<>();
+    // VID:PID ranges flattened into disjoint segments: segment i covers [rangeStarts[i], rangeStarts[i + 1])
+    private final long[] rangeStarts;
+    private final int[] rangeRules;
+    private final SerialTrie serials = new SerialTrie();
+    private final KeywordMatcher typeMatcher;
+    private final KeywordMatcher productMatcher;
+
+    private DevicePolicy(List<String> lines, String source) {
+        List<Rule> ruleList = new ArrayList<>();
+        List<long[]> ranges = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        List<Integer> typeRules = new ArrayList<>();
+        List<String> keywords = new ArrayList<>();
+        List<Integer> keywordRules = new ArrayList<>();
+        Rule fallback = new Rule(Verdict.ALLOW, 0, "default allow");
+
+        for (int n = 0; n < lines.size(); n++) {
+            String line = lines.get(n);
+            int hash = line.indexOf('#');
+            if (hash >= 0) line = line.substring(0, hash);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            String[] parts = line.split("\\s+", 2);
+            if (parts.length < 2) throw error(source, n, "expected '<verdict> <field>=<value>'");
+            if (parts[0].equalsIgnoreCase("default")) {
+                fallback = new Rule(verdict(parts[1].trim(), source, n), n + 1, line);
+                continue;
+            }
+            Verdict verdict = verdict(parts[0], source, n);
+            int eq = parts[1].indexOf('=');
+            if (eq < 0) throw error(source, n, "expected <field>=<value>");
+            String field = parts[1].substring(0, eq).trim().toLowerCase();
+            String value = parts[1].substring(eq + 1).trim();
+            if (value.isEmpty()) throw error(source, n, "empty value");
+
+            int index = ruleList.size();
+            ruleList.add(new Rule(verdict, n + 1, line));
+            switch (field) {
+                case "vidpid":
+                    int dash = value.indexOf('-');
+                    if (dash < 0) {
+                        byVidPid.putIfAbsent((int) vidPid(value, source, n), index);
+                    } else {
+                        String low = value.substring(0, dash).trim();
+                        String high = value.substring(dash + 1).trim();
+                        // "046D:C000-C0FF" keeps the vendor of the lower bound
+                        if (high.indexOf(':') < 0) high = low.substring(0, low.indexOf(':') + 1) + high;
+                        long from = vidPid(low, source, n);
+                        long to = vidPid(high, source, n);
+                        if (from > to) throw error(source, n, "empty range " + value);
+                        ranges.add(new long[] { from, to, index });
+                    }
+                    break;
+                case "vid":
+                    byVid.putIfAbsent(hex(value, source, n), index);
+                    break;
+                case "pid":
+                    byPid.putIfAbsent(hex(value, source, n), index);
+                    break;
+                case "serial":
+                    if (value.endsWith("*")) serials.add(value.substring(0, value.length() - 1), index, true);
+                    else serials.add(value, index, false);
+                    break;
+                case "type":
+                    types.add(value);
+                    typeRules.add(index);
+                    break;
+                case "keyword":
+                    keywords.add(value);
+                    keywordRules.add(index);
+                    break;
+                default:
+                    throw error(source, n, "unknown field '" + field + "'");
+            }
+        }
+
+        this.rules = ruleList.toArray(new Rule[0]);
+        this.defaultRule = fallback;
+        this.typeMatcher = new KeywordMatcher(types, toArray(typeRules));
+        this.productMatcher = new KeywordMatcher(keywords, toArray(keywordRules));
+
+        // Sweep over range boundaries, tracking the rules covering each segment
+        List<long[]> bounds = new ArrayList<>();
+        for (long[] r : ranges) {
+            bounds.add(new long[] { r[0], r[2], 1 });
+            bounds.add(new long[] { r[1] + 1, r[2], -1 });
+        }
+        bounds.sort((a, b) -> Long.compare(a[0], b[0]));
+        TreeMap<Integer, Integer> active = new TreeMap<>();
+        List<Long> starts = new ArrayList<>();
+        List<Integer> segmentRules = new ArrayList<>();
+        for (int i = 0; i < bounds.size(); ) {
+            long at = bounds.get(i)[0];
+            for (; i < bounds.size() && bounds.get(i)[0] == at; i++) {
+                int rule = (int) bounds.get(i)[1];
+                if (bounds.get(i)[2] > 0) active.merge(rule, 1, Integer::sum);
+                else if (active.merge(rule, -1, Integer::sum) == 0) active.remove(rule);
+            }
+            starts.add(at);
+            segmentRules.add(active.isEmpty() ? NONE : active.firstKey());
+        }
+        this.rangeStarts = new long[starts.size()];
+        for (int i = 0; i < rangeStarts.length; i++) rangeStarts[i] = starts.get(i);
+        this.rangeRules = toArray(segmentRules);
+    }
+
+    static DevicePolicy parse(List<String> lines) {
+        return new DevicePolicy(lines, "policy");
+    }
+
+    static DevicePolicy load(File file) throws IOException {
+        return new DevicePolicy(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8), file.getName());
+    }
+
+    // No rules: everything is allowed
+    static DevicePolicy allowAll() {
+        return new DevicePolicy(Collections.<String>emptyList(), "policy");
+    }
+
+    public int getRuleCount() { return rules.length; }
+
+    // The first rule matching the device, or the default rule
+    public Rule evaluate(USBMonitor.DeviceInfo device) {
+        int best = NONE;
+        long vidPid = parseVidPid(device.getDeviceId());
+        if (vidPid >= 0) {
+            int packed = (int) vidPid;
+            best = min(best, byVidPid.get(packed));
+            best = min(best, byVid.get(packed >>> 16));
+            best = min(best, byPid.get(packed & 0xFFFF));
+            best = Math.min(best, rangeRule(vidPid));
+        }
+        best = Math.min(best, serials.match(device.getSerialNumber()));
+        best = Math.min(best, typeMatcher.minValue(device.getDeviceType()));
+        best = Math.min(best, productMatcher.minValue(device.getProductName()));
+        return best == NONE ? defaultRule : rules[best];
+    }
+
+    private int rangeRule(long vidPid) {
+        int i = Arrays.binarySearch(rangeStarts, vidPid);
+        if (i < 0) i = -i - 2;
+        return i < 0 ? NONE : rangeRules[i];
+    }
+
+    // "VVVV:PPPP" as (vid << 16 | pid) in 0..FFFFFFFF, -1 for anything else (a long, since FFFF:FFFF fills
+    // all 32 bits); strictly four hex digits each, no sign, and no substrings, as this runs for every
+    // evaluated device
+    private static long parseVidPid(String deviceId) {
+        if (deviceId == null || deviceId.length() != 9 || deviceId.charAt(4) != ':') return -1;
+        long packed = 0;
+        for (int i = 0; i < 9; i++) {
+            if (i == 4) continue;
+            int digit = Character.digit(deviceId.charAt(i), 16);
+            if (digit < 0) return -1;
+            packed = (packed << 4) | digit;
+        }
+        return packed;
+    }
+
+    private static int min(int best, Integer rule) {
+        return rule != null && rule < best ? rule : best;
+    }
+
+    // Serial numbers, exact or by prefix, as a character trie
+    private static final class SerialTrie {
+        final Map<Character, SerialTrie> children = new HashMap<>();
+        int exactRule = NONE;
+        int prefixRule = NONE;
+
+        void add(String serial, int rule, boolean prefix) {
+            SerialTrie node = this;
+            for (int i = 0; i < serial.length(); i++) {
+                node = node.children.computeIfAbsent(serial.charAt(i), c -> new SerialTrie());
+            }
+            if (prefix) node.prefixRule = Math.min(node.prefixRule, rule);
+            else node.exactRule = Math.min(node.exactRule, rule);
+        }
+
+        // Lowest rule among the prefixes of the serial and an exact match
+        int match(String serial) {
+            if (serial == null) return NONE;
+            SerialTrie node = this;
+            int best = prefixRule;
+            for (int i = 0; i < serial.length(); i++) {
+                node = node.children.get(serial.charAt(i));
+                if (node == null) return best;
+                best = Math.min(best, node.prefixRule);
+            }
+            return Math.min(best, node.exactRule);
+        }
+    }
+
+    private static Verdict verdict(String name, String source, int n) {
+        try {
+            return Verdict.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw error(source, n, "unknown verdict '" + name + "'");
+        }
+    }
+
+    private static long vidPid(String value, String source, int n) {
+        long packed = parseVidPid(value.toUpperCase());
+        if (packed == -1) throw error(source, n, "expected VVVV:PPPP, got '" + value + "'");
+        return packed;
+    }
+
+    private static int hex(String value, String source, int n) {
+        try {
+            int id = Integer.parseInt(value, 16);
+            if (id < 0 || id > 0xFFFF) throw error(source, n, "ID out of range: " + value);
+            return id;
+        } catch (NumberFormatException e) {
+            throw error(source, n, "expected a hex ID, got '" + value + "'");
+        }
+    }
+
+    private static IllegalArgumentException error(String source, int n, String message) {
+        return new IllegalArgumentException(source + " line " + (n + 1) + ": " + message);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) result[i] = values.get(i);
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+// DeviceRegistry.java
+import java.util.Arrays;
+
+// Canonical DeviceInfo instances: a rescan that reports the same fields gets the existing record back
+// instead of a new one, so steady-state scans allocate no device objects and snapshot diffs compare by
+// reference. Lookups hash the raw field values, so no key object is built to find a match.
+class DeviceRegistry {
+    private final int maxEntries;
+    // Open addressing with linear probing; capacity is always a power of two at most half full
+    private USBMonitor.DeviceInfo[] table;
+    private int size;
+    private long hits, misses;
+
+    public DeviceRegistry(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.table = new USBMonitor.DeviceInfo[64];
+    }
+
+    // The registered device with these fields, creating and registering it if there is none
+    public synchronized USBMonitor.DeviceInfo intern(String deviceId, String productName, String manufacturer,
+                                                     String serialNumber, String deviceType, String storageCapacity) {
+        productName = USBMonitor.DeviceInfo.normalizeProductName(productName);
+        manufacturer = USBMonitor.DeviceInfo.normalizeManufacturer(manufacturer);
+        int hash = USBMonitor.DeviceInfo.hash(deviceId, productName, manufacturer, serialNumber, deviceType, storageCapacity);
+
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        for (USBMonitor.DeviceInfo existing; (existing = table[slot]) != null; slot = (slot + 1) & mask) {
+            if (existing.hashCode() == hash
+                    && existing.hasFields(deviceId, productName, manufacturer, serialNumber, deviceType, storageCapacity)) {
+                hits++;
+                return existing;
+            }
+        }
+
+        misses++;
+        USBMonitor.DeviceInfo device = new USBMonitor.DeviceInfo(
+                deviceId, productName, manufacturer, serialNumber, deviceType, storageCapacity);
+        add(device);
+        return device;
+    }
+
+    // The registered equal device, or this one after registering it
+    public synchronized USBMonitor.DeviceInfo intern(USBMonitor.DeviceInfo device) {
+        int mask = table.length - 1;
+        int slot = spread(device.hashCode()) & mask;
+        for (USBMonitor.DeviceInfo existing; (existing = table[slot]) != null; slot = (slot + 1) & mask) {
+            if (existing.equals(device)) {
+                hits++;
+                return existing;
+            }
+        }
+        misses++;
+        add(device);
+        return device;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(table, null);
+        size = 0;
+    }
+
+    public synchronized int size() { return size; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+
+    private void add(USBMonitor.DeviceInfo device) {
+        // Devices that come and go must not grow the table forever; live ones are re-added by the next scan
+        if (size >= maxEntries) clear();
+        if ((size + 1) * 2 > table.length) resize();
+        insert(device);
+    }
+
+    private void insert(USBMonitor.DeviceInfo device) {
+        int mask = table.length - 1;
+        int slot = spread(device.hashCode()) & mask;
+        while (table[slot] != null) slot = (slot + 1) & mask;
+        table[slot] = device;
+        size++;
+    }
+
+    private void resize() {
+        USBMonitor.DeviceInfo[] old = table;
+        table = new USBMonitor.DeviceInfo[old.length * 2];
+        size = 0;
+        for (USBMonitor.DeviceInfo device : old) {
+            if (device != null) insert(device);
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,26 @@
+// DeviceSnapshot.java
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Immutable view of all merged devices at one generation
+final class DeviceSnapshot {
+    static final DeviceSnapshot EMPTY = new DeviceSnapshot(0, new HashMap<>());
+
+    private final long generation;
+    private final Map<String, USBMonitor.DeviceInfo> devices;
+
+    // Takes ownership of the map; callers must not modify it afterwards
+    DeviceSnapshot(long generation, Map<String, USBMonitor.DeviceInfo> devices) {
+        this.generation = generation;
+        this.devices = Collections.unmodifiableMap(devices);
+    }
+
+    public long getGeneration() { return generation; }
+    public Map<String, USBMonitor.DeviceInfo> getDevices() { return devices; }
+    public Collection<USBMonitor.DeviceInfo> values() { return devices.values(); }
+    public USBMonitor.DeviceInfo get(String deviceId) { return devices.get(deviceId); }
+    public boolean contains(String deviceId) { return devices.containsKey(deviceId); }
+    public int size() { return devices.size(); }
+}
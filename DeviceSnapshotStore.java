@@ -0,0 +1,118 @@
+// DeviceSnapshotStore.java
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Publishes merged device state as atomically swapped snapshots and keeps a bounded change log
+class DeviceSnapshotStore {
+    private final int changeLogCapacity;
+    private volatile DeviceSnapshot current = DeviceSnapshot.EMPTY;
+
+    // Ring buffer of the most recent changes, oldest at changeLogStart
+    private final DeviceChange[] changeLog;
+    private int changeLogStart, changeLogSize;
+    // Highest generation whose changes have been dropped from the log
+    private long truncatedGeneration;
+
+    public DeviceSnapshotStore(int changeLogCapacity) {
+        this.changeLogCapacity = changeLogCapacity;
+        this.changeLog = new DeviceChange[changeLogCapacity];
+    }
+
+    // Latest snapshot; never blocks and never sees a partially merged state
+    public DeviceSnapshot current() {
+        return current;
+    }
+
+    // Replace the whole device set with a fresh scan; takes ownership of the map
+    public synchronized List<DeviceChange> publish(Map<String, USBMonitor.DeviceInfo> scanned) {
+        DeviceSnapshot previous = current;
+        Map<String, USBMonitor.DeviceInfo> before = previous.getDevices();
+        long generation = previous.getGeneration() + 1;
+        List<DeviceChange> changes = null;
+
+        int matched = 0;
+        for (Map.Entry<String, USBMonitor.DeviceInfo> entry : scanned.entrySet()) {
+            USBMonitor.DeviceInfo old = before.get(entry.getKey());
+            if (old == null) {
+                changes = add(changes, new DeviceChange(DeviceChange.Kind.ADDED, generation, entry.getKey(), null, entry.getValue()));
+            } else {
+                matched++;
+                if (!old.equals(entry.getValue())) {
+                    changes = add(changes, new DeviceChange(DeviceChange.Kind.CHANGED, generation, entry.getKey(), old, entry.getValue()));
+                }
+            }
+        }
+        // Every old key was found again, so nothing can have been removed
+        if (matched < before.size()) {
+            for (Map.Entry<String, USBMonitor.DeviceInfo> entry : before.entrySet()) {
+                if (!scanned.containsKey(entry.getKey())) {
+                    changes = add(changes, new DeviceChange(DeviceChange.Kind.REMOVED, generation, entry.getKey(), entry.getValue(), null));
+                }
+            }
+        }
+
+        if (changes == null) return Collections.emptyList();
+        current = new DeviceSnapshot(generation, scanned);
+        record(changes);
+        return changes;
+    }
+
+    // Remove a single device by its key (the device ID for any device that has one), e.g. from a hotplug
+    // removal; null if it was not present
+    public synchronized DeviceChange remove(String key) {
+        USBMonitor.DeviceInfo old = current.get(key);
+        if (old == null) return null;
+
+        long generation = current.getGeneration() + 1;
+        DeviceChange change = new DeviceChange(DeviceChange.Kind.REMOVED, generation, key, old, null);
+        Map<String, USBMonitor.DeviceInfo> devices = new HashMap<>(current.getDevices());
+        devices.remove(key);
+        current = new DeviceSnapshot(generation, devices);
+        record(Collections.singletonList(change));
+        return change;
+    }
+
+    // Changes published after the given generation, oldest first.
+    // Returns null when that generation has fallen out of the log and the caller must resync from current().
+    public synchronized List<DeviceChange> changesSince(long generation) {
+        if (generation < truncatedGeneration) return null;
+        List<DeviceChange> result = new ArrayList<>();
+        for (int i = 0; i < changeLogSize; i++) {
+            DeviceChange change = changeLog[(changeLogStart + i) % changeLogCapacity];
+            if (change.getGeneration() > generation) result.add(change);
+        }
+        return result;
+    }
+
+    // Drop all state, keeping generations increasing
+    public synchronized void clear() {
+        long generation = current.getGeneration() + 1;
+        current = new DeviceSnapshot(generation, new HashMap<>());
+        truncatedGeneration = generation;
+        Arrays.fill(changeLog, null);
+        changeLogStart = changeLogSize = 0;
+    }
+
+    private void record(List<DeviceChange> changes) {
+        for (DeviceChange change : changes) {
+            if (changeLogSize == changeLogCapacity) {
+                truncatedGeneration = changeLog[changeLogStart].getGeneration();
+                changeLog[changeLogStart] = null;
+                changeLogStart = (changeLogStart + 1) % changeLogCapacity;
+                changeLogSize--;
+            }
+            changeLog[(changeLogStart + changeLogSize) % changeLogCapacity] = change;
+            changeLogSize++;
+        }
+    }
+
+    private static List<DeviceChange> add(List<DeviceChange> changes, DeviceChange change) {
+        if (changes == null) changes = new ArrayList<>();
+        changes.add(change);
+        return changes;
+    }
+}
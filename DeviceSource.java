@@ -0,0 +1,15 @@
+// DeviceSource.java
+import java.util.List;
+
+// Backend that enumerates the currently connected USB devices
+interface DeviceSource {
+    // Short name used in status and error output
+    String getName();
+
+    // Enumerate connected devices. Throws (unchecked) if the scan failed: an empty list means
+    // "no devices", which the monitor would report as every device of this backend disconnecting.
+    List<USBMonitor.DeviceInfo> scan();
+
+    // Called from another thread when a scan has run past its deadline; should make scan() return soon
+    default void abort() {}
+}
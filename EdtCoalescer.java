@@ -0,0 +1,78 @@
+// EdtCoalescer.java
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Collects items from any thread and hands them to the EDT in batches, at most one batch per frame
+class EdtCoalescer<T> {
+    private static final int FRAME_MS = 16;
+
+    private final Consumer<List<T>> batchHandler;
+    private final Timer timer;
+    private List<T> pending = new ArrayList<>();
+    private boolean scheduled = false;
+    private long lastFlushNanos;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    // The handler runs on the EDT with every item submitted since the previous batch
+    public EdtCoalescer(Consumer<List<T>> batchHandler) {
+        this.batchHandler = batchHandler;
+        this.timer = new Timer(0, e -> flush());
+        this.timer.setRepeats(false);
+        // A coalescing timer drops a fire that happens while the previous one is still running the handler,
+        // which would leave scheduled set for good
+        this.timer.setCoalesce(false);
+    }
+
+    public void submit(T item) {
+        submitted.incrementAndGet();
+        synchronized (this) {
+            pending.add(item);
+            if (!schedule()) return;
+        }
+        timer.start();
+    }
+
+    // Items that were folded into an existing batch instead of causing their own UI update
+    public long getCoalescedCount() { return coalesced.get(); }
+    public long getSubmittedCount() { return submitted.get(); }
+    public long getBatchCount() { return batches.get(); }
+
+    // Arm the timer for the next frame unless it already is; caller holds the lock and starts the timer if true
+    private boolean schedule() {
+        if (scheduled) return false;
+        scheduled = true;
+        long sinceLast = (System.nanoTime() - lastFlushNanos) / 1_000_000;
+        timer.setInitialDelay((int) Math.max(0, FRAME_MS - sinceLast));
+        return true;
+    }
+
+    private void flush() {
+        List<T> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new ArrayList<>();
+            scheduled = false;
+            lastFlushNanos = System.nanoTime();
+        }
+        if (!batch.isEmpty()) {
+            batches.incrementAndGet();
+            coalesced.addAndGet(batch.size() - 1);
+            try {
+                batchHandler.accept(batch);
+            } finally {
+                // Items submitted while the handler ran go out in the next frame
+                boolean start;
+                synchronized (this) {
+                    start = !pending.isEmpty() && schedule();
+                }
+                if (start) timer.start();
+            }
+        }
+    }
+}
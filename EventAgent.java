@@ -0,0 +1,243 @@
+// EventAgent.java
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Streams this machine's device events to an EventCollector over TCP.
+// Events get increasing sequence numbers and stay in a bounded buffer until the collector acknowledges
+// them, so after a reconnect everything from the last acknowledged event on is sent again.
+// Listener callbacks run on the dispatch thread, so they never wait: when the buffer is full
+// (collector slow or unreachable) the new event is dropped and counted.
+class EventAgent implements USBMonitor.USBEventListener, AutoCloseable {
+    private static final int MAX_BATCH = 256;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final long MIN_RECONNECT_MS = 500;
+    private static final long MAX_RECONNECT_MS = 30000;
+    private static final long CLOSE_DRAIN_MS = 2000;
+
+    private final String host;
+    private final int port;
+    private final String agentId;
+    // Distinguishes this run from earlier ones that used the same agent ID and sequence numbers
+    private final long session = ThreadLocalRandom.current().nextLong();
+
+    // Unacknowledged events as a ring, oldest at head; sequence numbers are contiguous. Guarded by this.
+    private final EventFrames.Event[] buffer;
+    private int head, size;
+    private long nextSeq = 1;
+    private long sentSeq;
+    private long dropped;
+    private Socket socket;
+
+    private volatile boolean running = false;
+    private Thread senderThread;
+
+    public EventAgent(String host, int port, String agentId, int bufferCapacity) {
+        this.host = host;
+        this.port = port;
+        this.agentId = agentId;
+        this.buffer = new EventFrames.Event[bufferCapacity];
+        MonitorMetrics.registerGauge("agent.buffered", this::getBufferedCount);
+        MonitorMetrics.registerGauge("agent.dropped", this::getDroppedCount);
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        senderThread = new Thread(this::runSender, "USB-Agent-Sender");
+        senderThread.setDaemon(true);
+        senderThread.start();
+    }
+
+    @Override
+    public void onDeviceConnected(USBMonitor.DeviceInfo device) {
+        enqueue(EventFrames.CONNECTED, device);
+    }
+
+    @Override
+    public void onDeviceDisconnected(USBMonitor.DeviceInfo device) {
+        enqueue(EventFrames.DISCONNECTED, device);
+    }
+
+    @Override
+    public void onDeviceChanged(USBMonitor.DeviceInfo previous, USBMonitor.DeviceInfo current) {
+        enqueue(EventFrames.CHANGED, current);
+    }
+
+    @Override
+    public void onDeviceFlapping(USBMonitor.DeviceInfo device, int transitions, long windowMillis) {
+        enqueue(EventFrames.FLAPPING, device);
+    }
+
+    public synchronized long getBufferedCount() { return size; }
+    public synchronized long getDroppedCount() { return dropped; }
+
+    // Give the collector a moment to acknowledge what is buffered, then disconnect
+    @Override
+    public void close() {
+        long deadline = System.currentTimeMillis() + CLOSE_DRAIN_MS;
+        synchronized (this) {
+            try {
+                long remaining;
+                while (size > 0 && socket != null && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running = false;
+            closeSocket();
+            notifyAll();
+        }
+        if (senderThread != null) {
+            senderThread.interrupt();
+            try {
+                senderThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized void enqueue(byte kind, USBMonitor.DeviceInfo device) {
+        if (size == buffer.length) {
+            dropped++;
+            return;
+        }
+        buffer[(head + size) % buffer.length] = new EventFrames.Event(nextSeq++, System.currentTimeMillis(), kind, device);
+        size++;
+        notifyAll();
+    }
+
+    private void runSender() {
+        long reconnectDelay = MIN_RECONNECT_MS;
+        while (running) {
+            Socket s = new Socket();
+            try {
+                s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+                s.setTcpNoDelay(true);
+                reconnectDelay = MIN_RECONNECT_MS;
+                runConnection(s);
+            } catch (IOException e) {
+                if (running) System.err.println("Collector connection to " + host + ":" + port + " failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                synchronized (this) {
+                    if (socket == s) socket = null;
+                }
+                try {
+                    s.close();
+                } catch (IOException ignored) {}
+            }
+            if (!running) break;
+            try {
+                Thread.sleep(reconnectDelay);
+            } catch (InterruptedException e) {
+                break;
+            }
+            reconnectDelay = Math.min(MAX_RECONNECT_MS, reconnectDelay * 2);
+        }
+    }
+
+    private void runConnection(Socket s) throws IOException, InterruptedException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 64 * 1024));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        EventFrames.FrameWriter writer = new EventFrames.FrameWriter();
+        EventFrames.FrameReader reader = new EventFrames.FrameReader();
+
+        DataOutputStream hello = writer.start(EventFrames.HELLO);
+        hello.writeUTF(agentId);
+        hello.writeLong(session);
+        writer.send(out);
+
+        DataInputStream reply = reader.next(in);
+        if (reply.readByte() != EventFrames.HELLO_ACK) throw new IOException("Unexpected handshake reply");
+        long received = reply.readLong();
+        synchronized (this) {
+            acknowledge(received);
+            // Replay everything the collector has not stored yet
+            sentSeq = nextSeq - size - 1;
+            socket = s;
+        }
+        System.out.println("USB Agent: connected to " + host + ":" + port + ", resuming after event " + received);
+
+        Thread ackReader = new Thread(() -> readAcks(s, in, reader), "USB-Agent-Acks");
+        ackReader.setDaemon(true);
+        ackReader.start();
+
+        List<EventFrames.Event> batch = new ArrayList<>(MAX_BATCH);
+        while (nextBatch(s, batch)) {
+            DataOutputStream frame = writer.start(EventFrames.BATCH);
+            frame.writeInt(batch.size());
+            for (EventFrames.Event event : batch) {
+                EventFrames.writeEvent(frame, event);
+            }
+            writer.send(out);
+            MonitorMetrics.add("agent.sent", batch.size());
+            batch.clear();
+        }
+    }
+
+    // Wait for unsent events on this connection; false once it is closed
+    private synchronized boolean nextBatch(Socket s, List<EventFrames.Event> batch) throws InterruptedException {
+        long firstSeq = nextSeq - size;
+        while (running && socket == s && sentSeq >= nextSeq - 1) {
+            wait();
+            firstSeq = nextSeq - size;
+        }
+        if (!running || socket != s) return false;
+        for (long seq = sentSeq + 1; seq < nextSeq && batch.size() < MAX_BATCH; seq++) {
+            batch.add(buffer[(int) ((head + (seq - firstSeq)) % buffer.length)]);
+        }
+        sentSeq += batch.size();
+        return true;
+    }
+
+    private void readAcks(Socket s, DataInputStream in, EventFrames.FrameReader reader) {
+        try {
+            while (true) {
+                DataInputStream frame = reader.next(in);
+                if (frame.readByte() != EventFrames.ACK) throw new IOException("Unexpected frame from collector");
+                long seq = frame.readLong();
+                synchronized (this) {
+                    acknowledge(seq);
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                if (socket == s) {
+                    if (running) System.err.println("Collector connection lost: " + (e instanceof EOFException ? "closed by collector" : e.getMessage()));
+                    closeSocket();
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    // Drop events up to seq from the buffer and wake close(); caller holds the lock
+    private void acknowledge(long seq) {
+        while (size > 0 && buffer[head].seq <= seq) {
+            buffer[head] = null;
+            head = (head + 1) % buffer.length;
+            size--;
+        }
+        notifyAll();
+    }
+
+    private void closeSocket() {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+        socket = null;
+    }
+}
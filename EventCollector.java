@@ -0,0 +1,285 @@
+// EventCollector.java
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Receives event streams from many EventAgents and merges them into one store ordered by timestamp.
+// Each agent session's last stored sequence number is remembered, so events replayed after a
+// reconnect are acknowledged but stored only once.
+// Optionally every stored event also goes into a HistoryIndex for per-device questions across agents, such as
+// which machines saw a serial. The index keeps every event (the store is trimmed to maxEvents), so it is off
+// unless setHistory() is called.
+//
+// Usage: java EventCollector PORT   (prints every event as it arrives)
+public class EventCollector implements AutoCloseable {
+    // One event in the merged store
+    static class Record {
+        final String agentId;
+        final long seq;
+        final long timestampMillis;
+        final byte kind;
+        final USBMonitor.DeviceInfo device;
+
+        Record(String agentId, EventFrames.Event event) {
+            this.agentId = agentId;
+            this.seq = event.seq;
+            this.timestampMillis = event.timestampMillis;
+            this.kind = event.kind;
+            this.device = event.device;
+        }
+
+        String getKindName() { return EventFrames.kindName(kind); }
+
+        @Override
+        public String toString() {
+            return Instant.ofEpochMilli(timestampMillis) + " " + agentId + " " + getKindName() + " " + device.toLogString();
+        }
+    }
+
+    private static final Comparator<Record> ORDER = Comparator
+            .comparingLong((Record r) -> r.timestampMillis)
+            .thenComparing(r -> r.agentId)
+            .thenComparingLong(r -> r.seq);
+
+    private final ServerSocket server;
+    private final int maxEvents;
+    private final Map<String, AgentState> agents = new ConcurrentHashMap<>();
+    private final List<Consumer<Record>> listeners = new CopyOnWriteArrayList<>();
+    // Ordered by ORDER; guarded by itself
+    private final List<Record> store = new ArrayList<>();
+    private volatile HistoryIndex history;
+    private final Thread acceptThread;
+    private volatile boolean running = true;
+
+    // Port 0 picks a free port; the store keeps at most maxEvents, dropping the oldest
+    public EventCollector(int port, int maxEvents) throws IOException {
+        this.server = new ServerSocket(port);
+        this.maxEvents = maxEvents;
+        this.acceptThread = new Thread(this::acceptConnections, "USB-Collector-Accept");
+        this.acceptThread.setDaemon(true);
+        this.acceptThread.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: java EventCollector PORT");
+            System.exit(2);
+        }
+        EventCollector collector = new EventCollector(Integer.parseInt(args[0]), 1_000_000);
+        collector.addListener(System.out::println);
+        System.out.println("Collecting USB events on port " + collector.getPort());
+        Runtime.getRuntime().addShutdownHook(new Thread(collector::close, "USB-Collector-Shutdown"));
+        collector.acceptThread.join();
+    }
+
+    public int getPort() { return server.getLocalPort(); }
+
+    // Called on the connection's thread for every newly stored event
+    public void addListener(Consumer<Record> listener) {
+        listeners.add(listener);
+    }
+
+    // Index every event stored from now on, by serial, VID:PID and name under the agent that sent it
+    public void setHistory(HistoryIndex history) {
+        this.history = history;
+    }
+
+    // Null unless setHistory() was called
+    public HistoryIndex getHistory() {
+        return history;
+    }
+
+    public Set<String> getAgentIds() {
+        return new TreeSet<>(agents.keySet());
+    }
+
+    public int size() {
+        synchronized (store) {
+            return store.size();
+        }
+    }
+
+    // Events with from <= timestamp <= to from all agents, in order
+    public List<Record> query(long fromMillis, long toMillis) {
+        return query(fromMillis, toMillis, null, null);
+    }
+
+    // Events for one device ID (e.g. VID:PID), optionally limited to one agent
+    public List<Record> queryDevice(String deviceId, String agentId, long fromMillis, long toMillis) {
+        return query(fromMillis, toMillis, deviceId, agentId);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException ignored) {}
+        for (AgentState state : agents.values()) {
+            state.closeConnection();
+        }
+    }
+
+    private List<Record> query(long fromMillis, long toMillis, String deviceId, String agentId) {
+        List<Record> result = new ArrayList<>();
+        synchronized (store) {
+            for (int i = firstIndexAtOrAfter(fromMillis); i < store.size(); i++) {
+                Record r = store.get(i);
+                if (r.timestampMillis > toMillis) break;
+                if (deviceId != null && !deviceId.equals(r.device.getDeviceId())) continue;
+                if (agentId != null && !agentId.equals(r.agentId)) continue;
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
+    // Caller holds the store lock
+    private int firstIndexAtOrAfter(long timestampMillis) {
+        int low = 0, high = store.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (store.get(mid).timestampMillis < timestampMillis) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                Socket s = server.accept();
+                s.setTcpNoDelay(true);
+                Thread t = new Thread(() -> handleConnection(s), "USB-Collector-" + s.getRemoteSocketAddress());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (running) System.err.println("Collector accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void handleConnection(Socket s) {
+        AgentState state = null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            EventFrames.FrameReader reader = new EventFrames.FrameReader();
+            EventFrames.FrameWriter writer = new EventFrames.FrameWriter();
+
+            DataInputStream hello = reader.next(in);
+            if (hello.readByte() != EventFrames.HELLO) throw new IOException("Expected HELLO");
+            String agentId = hello.readUTF();
+            long session = hello.readLong();
+            state = agents.computeIfAbsent(agentId, AgentState::new);
+            long lastSeq = state.attach(session, s);
+            writer.start(EventFrames.HELLO_ACK).writeLong(lastSeq);
+            writer.send(out);
+
+            while (running) {
+                DataInputStream frame = reader.next(in);
+                if (frame.readByte() != EventFrames.BATCH) throw new IOException("Expected BATCH");
+                int count = frame.readInt();
+                List<Record> stored = new ArrayList<>(count);
+                synchronized (state) {
+                    for (int i = 0; i < count; i++) {
+                        EventFrames.Event event = EventFrames.readEvent(frame);
+                        // Replayed events the store already has
+                        if (event.seq <= state.lastSeq) continue;
+                        state.lastSeq = event.seq;
+                        stored.add(new Record(agentId, event));
+                    }
+                    lastSeq = state.lastSeq;
+                }
+                MonitorMetrics.increment("collector.batches");
+                store(stored);
+                writer.start(EventFrames.ACK).writeLong(lastSeq);
+                writer.send(out);
+            }
+        } catch (IOException e) {
+            // Agent went away; it reconnects and replays from the last ack
+        } finally {
+            if (state != null) state.detach(s);
+            try {
+                s.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void store(List<Record> records) {
+        if (records.isEmpty()) return;
+        synchronized (store) {
+            for (Record r : records) {
+                // Usually newest, so search from the end
+                int i = store.size();
+                while (i > 0 && ORDER.compare(store.get(i - 1), r) > 0) i--;
+                store.add(i, r);
+            }
+            // Trim in chunks so the copy is amortized
+            if (store.size() > maxEvents + maxEvents / 10) {
+                store.subList(0, store.size() - maxEvents).clear();
+            }
+        }
+        MonitorMetrics.add("collector.events", records.size());
+        HistoryIndex index = history;
+        for (Record r : records) {
+            if (index != null) index.addRecord(r);
+            for (Consumer<Record> listener : listeners) {
+                try {
+                    listener.accept(r);
+                } catch (Exception e) {
+                    System.err.println("Error in collector listener: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Last stored sequence number of an agent's current session
+    private static class AgentState {
+        final String agentId;
+        long session;
+        long lastSeq;
+        Socket connection;
+
+        AgentState(String agentId) {
+            this.agentId = agentId;
+        }
+
+        // A new session (agent restarted) starts counting from zero; an older connection is replaced
+        synchronized long attach(long newSession, Socket s) {
+            if (newSession != session) {
+                session = newSession;
+                lastSeq = 0;
+            }
+            closeConnection();
+            connection = s;
+            return lastSeq;
+        }
+
+        synchronized void detach(Socket s) {
+            if (connection == s) connection = null;
+        }
+
+        synchronized void closeConnection() {
+            if (connection == null) return;
+            try {
+                connection.close();
+            } catch (IOException ignored) {}
+            connection = null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+// EventFrames.java
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Wire format shared by EventAgent and EventCollector.
+// Every frame is an int length followed by that many bytes: a type byte and the payload.
+//   HELLO      agent -> collector  agentId (UTF), session (long)
+//   HELLO_ACK  collector -> agent  last sequence number received from this agent session (long)
+//   BATCH      agent -> collector  event count (int), then per event: seq, timestamp, kind, device fields
+//   ACK        collector -> agent  highest sequence number stored (long)
+final class EventFrames {
+    static final byte HELLO = 1;
+    static final byte HELLO_ACK = 2;
+    static final byte BATCH = 3;
+    static final byte ACK = 4;
+
+    static final byte CONNECTED = 0;
+    static final byte DISCONNECTED = 1;
+    static final byte CHANGED = 2;
+    static final byte FLAPPING = 3;
+
+    // Frames above this size are treated as a corrupt stream
+    static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    private EventFrames() {}
+
+    // One device event as sent over the wire
+    static class Event {
+        final long seq;
+        final long timestampMillis;
+        final byte kind;
+        final USBMonitor.DeviceInfo device;
+
+        Event(long seq, long timestampMillis, byte kind, USBMonitor.DeviceInfo device) {
+            this.seq = seq;
+            this.timestampMillis = timestampMillis;
+            this.kind = kind;
+            this.device = device;
+        }
+    }
+
+    static String kindName(byte kind) {
+        switch (kind) {
+            case CONNECTED: return "connected";
+            case DISCONNECTED: return "disconnected";
+            case CHANGED: return "changed";
+            case FLAPPING: return "flapping";
+            default: return "unknown";
+        }
+    }
+
+    // Frame builder: write the payload to the stream returned by start(), then send()
+    static class FrameWriter {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        private final DataOutputStream body = new DataOutputStream(bytes);
+
+        DataOutputStream start(byte type) throws IOException {
+            bytes.reset();
+            body.writeByte(type);
+            return body;
+        }
+
+        void send(DataOutputStream out) throws IOException {
+            body.flush();
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+            out.flush();
+        }
+    }
+
+    // Reads frames into a reused buffer; the returned stream holds the type byte and payload
+    static class FrameReader {
+        private byte[] buffer = new byte[4096];
+
+        DataInputStream next(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 1 || length > MAX_FRAME_BYTES) throw new IOException("Bad frame length " + length);
+            if (buffer.length < length) buffer = new byte[length];
+            in.readFully(buffer, 0, length);
+            return new DataInputStream(new ByteArrayInputStream(buffer, 0, length));
+        }
+    }
+
+    static void writeEvent(DataOutputStream out, Event event) throws IOException {
+        out.writeLong(event.seq);
+        out.writeLong(event.timestampMillis);
+        out.writeByte(event.kind);
+        USBMonitor.DeviceInfo d = event.device;
+        writeNullable(out, d.getDeviceId());
+        writeNullable(out, d.getProductName());
+        writeNullable(out, d.getManufacturer());
+        writeNullable(out, d.getSerialNumber());
+        writeNullable(out, d.getDeviceType());
+        writeNullable(out, d.getStorageCapacity());
+    }
+
+    static Event readEvent(DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        long timestamp = in.readLong();
+        byte kind = in.readByte();
+        USBMonitor.DeviceInfo device = USBMonitor.DeviceInfo.of(
+                readNullable(in), readNullable(in), readNullable(in),
+                readNullable(in), readNullable(in), readNullable(in));
+        return new Event(seq, timestamp, kind, device);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) return null;
+        return in.readUTF();
+    }
+}
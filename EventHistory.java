@@ -0,0 +1,120 @@
+// EventHistory.java
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Fixed-size ring buffer of recent events stored column-wise.
+// Timestamps and action codes live in primitive arrays; devices are kept once in a
+// reference-counted table, so memory stays bounded by the capacity however long the monitor runs.
+class EventHistory implements Iterable<LogEntry> {
+    private final int capacity;
+
+    // Event columns, oldest event at head
+    private final long[] timestamps;
+    private final byte[] actions;
+    private final int[] deviceRefs;
+    private int head, size;
+
+    // Deduplicated device table; a slot is freed when no event references it any more
+    private final MyDevice[] devices;
+    private final int[] refCounts;
+    private final int[] freeSlots;
+    private int freeCount;
+    private final Map<MyDevice, Integer> deviceSlots = new HashMap<>();
+
+    // Distinct action strings, e.g. "Inserted" and "Removed"
+    private final List<String> actionNames = new ArrayList<>();
+
+    public EventHistory(int capacity) {
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.actions = new byte[capacity];
+        this.deviceRefs = new int[capacity];
+        this.devices = new MyDevice[capacity];
+        this.refCounts = new int[capacity];
+        this.freeSlots = new int[capacity];
+        for (int i = 0; i < capacity; i++) freeSlots[i] = capacity - 1 - i;
+        this.freeCount = capacity;
+    }
+
+    // Record an event, evicting the oldest one when full
+    public synchronized void add(LogEntry entry) {
+        if (size == capacity) {
+            release(deviceRefs[head]);
+            head = (head + 1) % capacity;
+            size--;
+        }
+        int index = (head + size) % capacity;
+        timestamps[index] = entry.getTimestampMillis();
+        actions[index] = actionCode(entry.getAction());
+        deviceRefs[index] = acquire(entry.getDevice());
+        size++;
+    }
+
+    public synchronized int size() { return size; }
+    public int capacity() { return capacity; }
+
+    // Number of distinct devices currently referenced
+    public synchronized int deviceCount() { return deviceSlots.size(); }
+
+    // The i-th retained event, 0 being the oldest
+    public synchronized LogEntry get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+        int index = (head + i) % capacity;
+        return new LogEntry(devices[deviceRefs[index]], actionNames.get(actions[index]), timestamps[index]);
+    }
+
+    // The most recent n events, oldest first
+    public synchronized List<LogEntry> last(int n) {
+        int count = Math.min(n, size);
+        List<LogEntry> result = new ArrayList<>(count);
+        for (int i = size - count; i < size; i++) result.add(get(i));
+        return result;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(devices, null);
+        Arrays.fill(refCounts, 0);
+        for (int i = 0; i < capacity; i++) freeSlots[i] = capacity - 1 - i;
+        freeCount = capacity;
+        deviceSlots.clear();
+        head = size = 0;
+    }
+
+    // Iterates over the events retained when iteration starts, oldest first
+    @Override
+    public Iterator<LogEntry> iterator() {
+        return last(capacity).iterator();
+    }
+
+    private int acquire(MyDevice device) {
+        Integer slot = deviceSlots.get(device);
+        if (slot == null) {
+            slot = freeSlots[--freeCount];
+            devices[slot] = device;
+            deviceSlots.put(device, slot);
+        }
+        refCounts[slot]++;
+        return slot;
+    }
+
+    private void release(int slot) {
+        if (--refCounts[slot] > 0) return;
+        deviceSlots.remove(devices[slot]);
+        devices[slot] = null;
+        freeSlots[freeCount++] = slot;
+    }
+
+    private byte actionCode(String action) {
+        int code = actionNames.indexOf(action);
+        if (code < 0) {
+            if (actionNames.size() == Byte.MAX_VALUE) throw new IllegalStateException("Too many distinct actions");
+            actionNames.add(action);
+            code = actionNames.size() - 1;
+        }
+        return (byte) code;
+    }
+}
@@ -0,0 +1,412 @@
+// EventJournal.java
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+// Append-only binary journal of device events with a sparse timestamp index.
+//
+// Layout of the journal directory:
+//   devices.dat        device dictionary, one entry per distinct set of device fields
+//   events-NNNNNN.seg  16-byte header followed by fixed 24-byte event records
+// Record layout: timestamp millis (8), device ref (4), VID:PID as int or -1 (4), action code (1), padding (7).
+// Events keep their real timestamps. Within a segment they are non-decreasing so range queries can binary
+// search the index; an event older than the last one (clock stepped back, or an imported text log) starts a
+// new segment, and queries merge overlapping segments.
+// A dictionary entry reaches the file before any record that refers to it.
+// A segment that a crash left without a complete header holds no records and is deleted on load.
+class EventJournal implements AutoCloseable {
+    private static final int MAGIC = 0x55534A31; // "USJ1"
+    private static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 24;
+    // One index point per this many records
+    private static final int INDEX_INTERVAL = 1024;
+    private static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+
+    private static final byte[] RECORD_PADDING = new byte[7];
+
+    private static final byte ACTION_OTHER = 0;
+    private static final byte ACTION_INSERTED = 1;
+    private static final byte ACTION_REMOVED = 2;
+    private static final byte ACTION_CHANGED = 3;
+    private static final byte ACTION_FLAPPING = 4;
+
+    private final File directory;
+    private final int segmentRecords;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final List<Segment> segments = new ArrayList<>();
+    // Number in the file name of the next segment; files may have gaps where empty segments were deleted
+    private int nextSegmentNumber = 1;
+    private final List<MyDevice> devices = new ArrayList<>();
+    private final Map<String, Integer> deviceRefs = new HashMap<>();
+    private FileOutputStream dictionaryFile;
+    private DataOutputStream dictionaryOut;
+    private FileChannel activeChannel;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+
+    public EventJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_RECORDS);
+    }
+
+    public EventJournal(File directory, int segmentRecords) throws IOException {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+        loadDictionary();
+        loadSegments();
+    }
+
+    // Append one event; it reaches the OS straight away and the disk on flush(true)
+    public synchronized void append(LogEntry entry) throws IOException {
+        long timestamp = entry.getTimestampMillis();
+        Segment segment = activeSegment(timestamp);
+        int deviceRef = deviceRef(entry.getDevice());
+
+        recordBuffer.clear();
+        recordBuffer.putLong(timestamp)
+                .putInt(deviceRef)
+                .putInt(parseVidPid(entry.getDevice().getDeviceId()))
+                .put(actionCode(entry.getAction()))
+                .put(RECORD_PADDING);
+        recordBuffer.flip();
+        while (recordBuffer.hasRemaining()) activeChannel.write(recordBuffer);
+
+        segment.added(timestamp);
+    }
+
+    // Optionally force appended records to disk; dictionary entries are written as they are added
+    public synchronized void flush(boolean fsync) throws IOException {
+        if (fsync && activeChannel != null) activeChannel.force(false);
+    }
+
+    // All events with from <= timestamp <= to, oldest first
+    public List<LogEntry> query(LocalDateTime from, LocalDateTime to) throws IOException {
+        return query(from, to, null, -1);
+    }
+
+    // Events of one device ID (e.g. "0781:5581" or "WMI_1234") between from and to
+    public List<LogEntry> queryDevice(String deviceId, LocalDateTime from, LocalDateTime to) throws IOException {
+        return query(from, to, deviceId, parseVidPid(deviceId));
+    }
+
+    public synchronized long size() {
+        long total = 0;
+        for (Segment segment : segments) total += segment.records;
+        return total;
+    }
+
+    private List<LogEntry> query(LocalDateTime from, LocalDateTime to, String deviceId, int vidPid) throws IOException {
+        long fromMillis = from.atZone(zone).toInstant().toEpochMilli();
+        long toMillis = to.atZone(zone).toInstant().toEpochMilli();
+
+        // Take a consistent view; records below each segment's count are never rewritten
+        List<Segment> view = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        MyDevice[] dictionary;
+        synchronized (this) {
+            for (Segment segment : segments) {
+                if (segment.records == 0 || segment.lastTimestamp < fromMillis || segment.firstTimestamp > toMillis) continue;
+                view.add(segment);
+                counts.add(segment.records);
+            }
+            dictionary = devices.toArray(new MyDevice[0]);
+        }
+
+        boolean[] deviceMask = null;
+        if (deviceId != null) {
+            deviceMask = new boolean[dictionary.length];
+            for (int i = 0; i < dictionary.length; i++) {
+                deviceMask[i] = deviceId.equals(dictionary[i].getDeviceId());
+            }
+        }
+
+        List<LogEntry> result = new ArrayList<>();
+        boolean overlapping = false;
+        long latest = Long.MIN_VALUE;
+        for (int s = 0; s < view.size(); s++) {
+            Segment segment = view.get(s);
+            if (segment.firstTimestamp < latest) overlapping = true;
+            latest = Math.max(latest, segment.lastTimestamp);
+            long records = counts.get(s);
+            MappedByteBuffer map = segment.map(records);
+            for (long i = segment.seek(fromMillis); i < records; i++) {
+                int offset = HEADER_SIZE + (int) (i * RECORD_SIZE);
+                long timestamp = map.getLong(offset);
+                if (timestamp < fromMillis) continue;
+                if (timestamp > toMillis) break;
+                if (vidPid != -1 && map.getInt(offset + 12) != vidPid) continue;
+                int ref = map.getInt(offset + 8);
+                if (ref < 0 || ref >= dictionary.length) continue;
+                if (deviceMask != null && !deviceMask[ref]) continue;
+                result.add(new LogEntry(dictionary[ref], actionName(map.get(offset + 16)), timestamp));
+            }
+        }
+        // Each segment is sorted, so this only merges the runs of segments that overlap in time
+        if (overlapping) result.sort(Comparator.comparingLong(LogEntry::getTimestampMillis));
+        return result;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (dictionaryOut != null) dictionaryOut.close();
+        if (activeChannel != null) activeChannel.close();
+        dictionaryOut = null;
+        activeChannel = null;
+    }
+
+    // Import the text log written by Logger with its original timestamps; returns the number of events converted.
+    // The events go into segments of their own, so importing into a journal that already holds later events
+    // leaves both intact.
+    public int importTextLog(File textLog) throws IOException {
+        synchronized (this) {
+            startSegment();
+        }
+        int imported = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(textLog), LogEntry.CHARSET))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                LogEntry entry = LogEntry.parse(line);
+                if (entry == null) continue;
+                append(entry);
+                imported++;
+            }
+        }
+        flush(true);
+        return imported;
+    }
+
+    // Converter entry point: java EventJournal <usb_log.txt> <journal dir>
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java EventJournal <text log> <journal directory>");
+            System.exit(2);
+        }
+        try (EventJournal journal = new EventJournal(new File(args[1]))) {
+            int count = journal.importTextLog(new File(args[0]));
+            System.out.println("Imported " + count + " events into " + args[1]);
+        }
+    }
+
+    // ---- segments ----
+
+    // The segment an event with this timestamp goes into: the last one, unless it is full or the event is older
+    private Segment activeSegment(long timestamp) throws IOException {
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last == null || last.records >= segmentRecords || (last.records > 0 && timestamp < last.lastTimestamp)) {
+            last = startSegment();
+        } else if (activeChannel == null) {
+            activeChannel = FileChannel.open(last.file.toPath(), StandardOpenOption.WRITE);
+            activeChannel.position(HEADER_SIZE + last.records * RECORD_SIZE);
+        }
+        return last;
+    }
+
+    private Segment startSegment() throws IOException {
+        if (activeChannel != null) activeChannel.close();
+        Segment segment = new Segment(new File(directory, String.format("events-%06d.seg", nextSegmentNumber++)));
+        activeChannel = FileChannel.open(segment.file.toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(RECORD_SIZE).putLong(0).flip();
+        while (header.hasRemaining()) activeChannel.write(header);
+        segments.add(segment);
+        return segment;
+    }
+
+    private void loadSegments() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("events-") && name.endsWith(".seg"));
+        if (files == null) return;
+        Arrays.sort(files);
+        for (File file : files) {
+            nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(file) + 1);
+            if (file.length() < HEADER_SIZE) {
+                // Created but the header never made it to disk
+                System.err.println("Deleting journal segment without a header: " + file);
+                if (!file.delete()) throw new IOException("Cannot delete truncated journal segment " + file);
+                continue;
+            }
+            Segment segment = new Segment(file);
+            segment.load();
+            segments.add(segment);
+        }
+    }
+
+    private static int segmentNumber(File file) {
+        String name = file.getName();
+        try {
+            return Integer.parseInt(name.substring("events-".length(), name.length() - ".seg".length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // One segment file and its sparse index
+    private static class Segment {
+        final File file;
+        long records;
+        long firstTimestamp = Long.MAX_VALUE, lastTimestamp = Long.MIN_VALUE;
+        // Timestamp of every INDEX_INTERVAL-th record
+        long[] index = new long[16];
+        int indexSize;
+        private MappedByteBuffer mapped;
+        private long mappedRecords;
+
+        Segment(File file) {
+            this.file = file;
+        }
+
+        void added(long timestamp) {
+            if (records % INDEX_INTERVAL == 0) {
+                if (indexSize == index.length) index = Arrays.copyOf(index, indexSize * 2);
+                index[indexSize++] = timestamp;
+            }
+            if (records == 0) firstTimestamp = timestamp;
+            lastTimestamp = timestamp;
+            records++;
+        }
+
+        // Rebuild counts and the index from an existing file, ignoring a torn final record
+        void load() throws IOException {
+            long length = file.length();
+            if (length < HEADER_SIZE) throw new IOException("Truncated journal segment " + file);
+            long count = (length - HEADER_SIZE) / RECORD_SIZE;
+            MappedByteBuffer map = map(count);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != RECORD_SIZE) {
+                throw new IOException("Not a journal segment: " + file);
+            }
+            for (long i = 0; i < count; i += INDEX_INTERVAL) {
+                records = i;
+                added(map.getLong(HEADER_SIZE + (int) (i * RECORD_SIZE)));
+            }
+            records = count;
+            if (count > 0) lastTimestamp = map.getLong(HEADER_SIZE + (int) ((count - 1) * RECORD_SIZE));
+        }
+
+        // Read-only mapping covering at least the given number of records
+        synchronized MappedByteBuffer map(long recordCount) throws IOException {
+            if (mapped == null || mappedRecords < recordCount) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + recordCount * RECORD_SIZE);
+                    mappedRecords = recordCount;
+                }
+            }
+            return mapped;
+        }
+
+        // First record that can hold a timestamp >= from
+        long seek(long from) {
+            int lo = 0, hi = indexSize - 1, block = 0;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (index[mid] < from) {
+                    block = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return (long) block * INDEX_INTERVAL;
+        }
+    }
+
+    // ---- device dictionary ----
+
+    private int deviceRef(MyDevice device) throws IOException {
+        String key = dictionaryKey(device);
+        Integer ref = deviceRefs.get(key);
+        if (ref != null) return ref;
+
+        String[] fields = fieldsOf(device);
+        for (String field : fields) {
+            dictionaryOut.writeBoolean(field != null);
+            if (field != null) dictionaryOut.writeUTF(field);
+        }
+        // On disk before the record that refers to it; new devices are rare, so the sync is cheap overall
+        dictionaryOut.flush();
+        dictionaryFile.getChannel().force(false);
+        devices.add(device);
+        deviceRefs.put(key, devices.size() - 1);
+        return devices.size() - 1;
+    }
+
+    private void loadDictionary() throws IOException {
+        File file = new File(directory, "devices.dat");
+        if (file.isFile()) {
+            byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            String[] fields = new String[6];
+            long complete = 0;
+            while (true) {
+                try {
+                    for (int i = 0; i < fields.length; i++) {
+                        fields[i] = in.readBoolean() ? in.readUTF() : null;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                complete = bytes.length - in.available();
+                MyDevice device = new MyDevice(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]);
+                devices.add(device);
+                deviceRefs.put(dictionaryKey(device), devices.size() - 1);
+            }
+            // Cut off an entry torn by a crash so new entries start on a boundary
+            if (complete < bytes.length) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(complete);
+                }
+            }
+        }
+        dictionaryFile = new FileOutputStream(file, true);
+        dictionaryOut = new DataOutputStream(new BufferedOutputStream(dictionaryFile));
+    }
+
+    private static String[] fieldsOf(MyDevice device) {
+        return new String[] { device.getName(), device.getManufacturer(), device.getDeviceId(),
+                device.getDeviceType(), device.getSerialNumber(), device.getStorageCapacity() };
+    }
+
+    private static String dictionaryKey(MyDevice device) {
+        StringBuilder sb = new StringBuilder();
+        for (String field : fieldsOf(device)) {
+            sb.append(field == null ? "\u0001" : field).append('\u0000');
+        }
+        return sb.toString();
+    }
+
+    // ---- encoding helpers ----
+
+    // "VVVV:PPPP" as (vid << 16 | pid), -1 for IDs that are not VID:PID
+    static int parseVidPid(String deviceId) {
+        if (deviceId == null || deviceId.length() != 9 || deviceId.charAt(4) != ':') return -1;
+        try {
+            return (Integer.parseInt(deviceId.substring(0, 4), 16) << 16) | Integer.parseInt(deviceId.substring(5), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte actionCode(String action) {
+        if ("Inserted".equals(action)) return ACTION_INSERTED;
+        if ("Removed".equals(action)) return ACTION_REMOVED;
+        if ("Changed".equals(action)) return ACTION_CHANGED;
+        if ("Flapping".equals(action)) return ACTION_FLAPPING;
+        return ACTION_OTHER;
+    }
+
+    private static String actionName(byte code) {
+        switch (code) {
+            case ACTION_INSERTED: return "Inserted";
+            case ACTION_REMOVED: return "Removed";
+            case ACTION_CHANGED: return "Changed";
+            case ACTION_FLAPPING: return "Flapping";
+            default: return "Event";
+        }
+    }
+}
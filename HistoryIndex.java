@@ -0,0 +1,324 @@
+// HistoryIndex.java
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+
+// In-memory index over every device event, for questions like "when did serial X last connect",
+// "how often did VID:PID Y appear this week" and "which machines saw device Z".
+// Events are stored column-wise in primitive arrays. Each serial, VID:PID and device name has a posting
+// list of event numbers sorted by timestamp, so a lookup is one hash probe plus a binary search.
+// Filled from the text log (including rotated .gz segments) and kept current as a USBEventListener;
+// an EventCollector can fill one with the events of all its agents.
+class HistoryIndex implements USBMonitor.USBEventListener {
+    // Host recorded for events seen by this process or read from its log
+    static final String LOCAL_HOST = "local";
+
+    enum Key { SERIAL, VID_PID, NAME }
+
+    // Event columns, in arrival order
+    private long[] timestamps = new long[1024];
+    private byte[] actions = new byte[1024];
+    private int[] deviceRefs = new int[1024];
+    private int[] hostRefs = new int[1024];
+    private int size;
+
+    // Interned values referenced by the columns
+    private final List<MyDevice> devices = new ArrayList<>();
+    private final Map<MyDevice, Integer> deviceSlots = new HashMap<>();
+    // Serial, VID:PID and name posting lists of each device slot (entries may be null), resolved once
+    private final List<Postings[]> devicePostings = new ArrayList<>();
+    private final List<String> hosts = new ArrayList<>();
+    private final Map<String, Integer> hostSlots = new HashMap<>();
+    private final List<String> actionNames = new ArrayList<>();
+
+    private final Map<String, Postings> bySerial = new HashMap<>();
+    private final Map<String, Postings> byVidPid = new HashMap<>();
+    private final Map<String, Postings> byName = new HashMap<>();
+
+    // Bytes of each plain text log already indexed, so loading it again only reads new lines
+    private final Map<File, Long> logOffsets = new HashMap<>();
+
+    // Event numbers of one key, ordered by timestamp
+    private static class Postings {
+        int[] events = new int[4];
+        int size;
+    }
+
+    @Override
+    public void onDeviceConnected(USBMonitor.DeviceInfo device) {
+        add(LOCAL_HOST, new LogEntry(device.toMyDevice(), "Inserted"));
+    }
+
+    @Override
+    public void onDeviceDisconnected(USBMonitor.DeviceInfo device) {
+        add(LOCAL_HOST, new LogEntry(device.toMyDevice(), "Removed"));
+    }
+
+    @Override
+    public void onDeviceChanged(USBMonitor.DeviceInfo previous, USBMonitor.DeviceInfo current) {
+        add(LOCAL_HOST, new LogEntry(current.toMyDevice(), "Changed"));
+    }
+
+    // An event received by an EventCollector, indexed under the agent that sent it
+    public void addRecord(EventCollector.Record record) {
+        String action = record.kind == EventFrames.CONNECTED ? "Inserted"
+                : record.kind == EventFrames.DISCONNECTED ? "Removed"
+                : record.kind == EventFrames.FLAPPING ? "Flapping" : "Changed";
+        add(record.agentId, new LogEntry(record.device.toMyDevice(), action, record.timestampMillis));
+    }
+
+    public synchronized void add(String host, LogEntry entry) {
+        if (size == timestamps.length) grow();
+        int event = size++;
+        timestamps[event] = entry.getTimestampMillis();
+        actions[event] = actionCode(entry.getAction());
+        hostRefs[event] = slot(hosts, hostSlots, host);
+        int device = slot(devices, deviceSlots, entry.getDevice());
+        deviceRefs[event] = device;
+        if (device == devicePostings.size()) devicePostings.add(resolvePostings(entry.getDevice()));
+        for (Postings p : devicePostings.get(device)) {
+            if (p != null) post(p, event);
+        }
+    }
+
+    // Index the lines of a log written by Logger; a plain log is read from where the last call stopped
+    // (from the start again if it was rotated in between), a .gz segment is read whole.
+    // Returns the number of events added.
+    public int loadTextLog(File file) throws IOException {
+        if (file.getName().endsWith(".gz")) {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(file), 64 * 1024)) {
+                return (int) readLines(in, Long.MAX_VALUE)[0];
+            }
+        }
+        long offset;
+        synchronized (this) {
+            offset = logOffsets.getOrDefault(file, 0L);
+        }
+        if (file.length() < offset) offset = 0;
+        long[] result;
+        try (InputStream in = new FileInputStream(file)) {
+            long skipped = 0;
+            while (skipped < offset) {
+                long n = in.skip(offset - skipped);
+                if (n <= 0) break;
+                skipped += n;
+            }
+            result = readLines(in, file.length() - skipped);
+            offset = skipped + result[1];
+        }
+        synchronized (this) {
+            logOffsets.put(file, offset);
+        }
+        return (int) result[0];
+    }
+
+    // Index complete lines of an already opened plain log, reading at most limit bytes. Lets a caller fix
+    // the end of what is loaded (e.g. the log as it was before live events were indexed) even if the Logger
+    // rotates the file away meanwhile. Returns the number of events added.
+    public int loadTextLog(InputStream in, long limit) throws IOException {
+        return (int) readLines(in, limit)[0];
+    }
+
+    public synchronized int size() { return size; }
+    public synchronized int deviceCount() { return devices.size(); }
+
+    // Timestamp of the latest event with this action (any action if null), or -1 if there is none
+    public synchronized long lastEvent(Key key, String value, String action) {
+        Postings p = postings(key, value);
+        if (p == null) return -1;
+        int code = action == null ? -1 : actionNames.indexOf(action);
+        if (action != null && code < 0) return -1;
+        for (int i = p.size - 1; i >= 0; i--) {
+            int event = p.events[i];
+            if (code < 0 || actions[event] == code) return timestamps[event];
+        }
+        return -1;
+    }
+
+    // Number of events with from <= timestamp <= to and this action (any action if null)
+    public synchronized int count(Key key, String value, String action, long fromMillis, long toMillis) {
+        Postings p = postings(key, value);
+        if (p == null) return 0;
+        int start = firstAtOrAfter(p, fromMillis);
+        int end = firstAtOrAfter(p, toMillis == Long.MAX_VALUE ? toMillis : toMillis + 1);
+        if (action == null) return end - start;
+        int code = actionNames.indexOf(action);
+        if (code < 0) return 0;
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (actions[p.events[i]] == code) count++;
+        }
+        return count;
+    }
+
+    // Hosts that reported any event for this key, sorted
+    public synchronized List<String> hosts(Key key, String value) {
+        Postings p = postings(key, value);
+        if (p == null) return new ArrayList<>();
+        boolean[] seen = new boolean[hosts.size()];
+        TreeSet<String> result = new TreeSet<>();
+        for (int i = 0; i < p.size; i++) {
+            int host = hostRefs[p.events[i]];
+            if (!seen[host]) {
+                seen[host] = true;
+                result.add(hosts.get(host));
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    // Events with from <= timestamp <= to, oldest first
+    public synchronized List<LogEntry> events(Key key, String value, long fromMillis, long toMillis) {
+        List<LogEntry> result = new ArrayList<>();
+        Postings p = postings(key, value);
+        if (p == null) return result;
+        for (int i = firstAtOrAfter(p, fromMillis); i < p.size; i++) {
+            int event = p.events[i];
+            if (timestamps[event] > toMillis) break;
+            result.add(new LogEntry(devices.get(deviceRefs[event]), actionNames.get(actions[event]), timestamps[event]));
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        size = 0;
+        devices.clear();
+        deviceSlots.clear();
+        devicePostings.clear();
+        hosts.clear();
+        hostSlots.clear();
+        actionNames.clear();
+        bySerial.clear();
+        byVidPid.clear();
+        byName.clear();
+        logOffsets.clear();
+    }
+
+    // Normalized lookup keys; null for values that identify nothing
+    static String serialKey(String serial) {
+        if (serial == null) return null;
+        serial = serial.trim();
+        return serial.isEmpty() || serial.equals("N/A") || serial.equalsIgnoreCase("Unknown") ? null : serial;
+    }
+
+    static String vidPidKey(String deviceId) {
+        if (deviceId == null) return null;
+        deviceId = deviceId.trim();
+        return deviceId.isEmpty() || deviceId.equals("N/A") ? null : deviceId.toUpperCase();
+    }
+
+    static String nameKey(String name) {
+        if (name == null) return null;
+        name = name.trim();
+        return name.isEmpty() ? null : name.toLowerCase();
+    }
+
+    // Parses complete lines from in, reading at most limit bytes; returns {events added, bytes consumed}.
+    // A trailing line without a newline is left for the next call, as the Logger may still be writing it.
+    private long[] readLines(InputStream in, long limit) throws IOException {
+        byte[] chunk = new byte[64 * 1024];
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        long added = 0, consumed = 0, read = 0;
+        int n;
+        while (read < limit && (n = in.read(chunk, 0, (int) Math.min(chunk.length, limit - read))) > 0) {
+            int lineStart = 0;
+            for (int i = 0; i < n; i++) {
+                if (chunk[i] != '\n') continue;
+                line.write(chunk, lineStart, i - lineStart);
+                lineStart = i + 1;
+                consumed = read + lineStart;
+                LogEntry entry = LogEntry.parse(trimCarriageReturn(new String(line.toByteArray(), LogEntry.CHARSET)));
+                line.reset();
+                if (entry == null) continue;
+                add(LOCAL_HOST, entry);
+                added++;
+            }
+            line.write(chunk, lineStart, n - lineStart);
+            read += n;
+        }
+        return new long[] { added, consumed };
+    }
+
+    private static String trimCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    private Postings postings(Key key, String value) {
+        switch (key) {
+            case SERIAL: return bySerial.get(serialKey(value));
+            case VID_PID: return byVidPid.get(vidPidKey(value));
+            default: return byName.get(nameKey(value));
+        }
+    }
+
+    private Postings[] resolvePostings(MyDevice device) {
+        return new Postings[] {
+            postings(bySerial, serialKey(device.getSerialNumber())),
+            postings(byVidPid, vidPidKey(device.getDeviceId())),
+            postings(byName, nameKey(device.getName()))
+        };
+    }
+
+    private static Postings postings(Map<String, Postings> index, String key) {
+        return key == null ? null : index.computeIfAbsent(key, k -> new Postings());
+    }
+
+    // Insert keeping the list sorted; events almost always arrive in time order, so search from the end
+    private void post(Postings p, int event) {
+        if (p.size == p.events.length) p.events = Arrays.copyOf(p.events, p.size * 2);
+        long timestamp = timestamps[event];
+        int i = p.size;
+        while (i > 0 && timestamps[p.events[i - 1]] > timestamp) i--;
+        System.arraycopy(p.events, i, p.events, i + 1, p.size - i);
+        p.events[i] = event;
+        p.size++;
+    }
+
+    // Index of the first posting with timestamp >= the given one
+    private int firstAtOrAfter(Postings p, long timestamp) {
+        int low = 0, high = p.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[p.events[mid]] < timestamp) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        actions = Arrays.copyOf(actions, capacity);
+        deviceRefs = Arrays.copyOf(deviceRefs, capacity);
+        hostRefs = Arrays.copyOf(hostRefs, capacity);
+    }
+
+    private static <T> int slot(List<T> values, Map<T, Integer> slots, T value) {
+        Integer slot = slots.get(value);
+        if (slot == null) {
+            slot = values.size();
+            values.add(value);
+            slots.put(value, slot);
+        }
+        return slot;
+    }
+
+    private byte actionCode(String action) {
+        int code = actionNames.indexOf(action);
+        if (code < 0) {
+            if (actionNames.size() == Byte.MAX_VALUE) throw new IllegalStateException("Too many distinct actions");
+            actionNames.add(action);
+            code = actionNames.size() - 1;
+        }
+        return (byte) code;
+    }
+}
@@ -0,0 +1,120 @@
+// KeywordMatcher.java
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+// Case-insensitive multi-keyword matcher (Aho-Corasick).
+// All keywords are found in one pass over the text, however many there are. Each keyword carries an
+// int value (e.g. a category index). Matching is on ASCII letters folded to lower case; any other
+// character only matches itself, and characters above 0x7F never match.
+class KeywordMatcher {
+    private static final int ALPHABET = 128;
+
+    // Complete transition table: next state = transitions[state * ALPHABET + c]
+    private final int[] transitions;
+    // Values of the keywords ending in each state, including those reached through fail links
+    private final int[][] outputs;
+
+    // keywords[i] is reported with values[i]
+    public KeywordMatcher(List<String> keywords, int[] values) {
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        trie.add(newNode());
+        out.add(new ArrayList<>());
+
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            if (keyword.isEmpty()) continue;
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int c = fold(keyword.charAt(i));
+                if (c < 0) throw new IllegalArgumentException("Keyword must be ASCII: " + keyword);
+                int next = trie.get(state)[c];
+                if (next < 0) {
+                    next = trie.size();
+                    trie.get(state)[c] = next;
+                    trie.add(newNode());
+                    out.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            out.get(state).add(values[k]);
+        }
+
+        // Breadth-first: fill missing transitions from the fail state and inherit its outputs
+        int[] fail = new int[trie.size()];
+        Queue<Integer> queue = new ArrayDeque<>();
+        int[] root = trie.get(0);
+        for (int c = 0; c < ALPHABET; c++) {
+            if (root[c] < 0) {
+                root[c] = 0;
+            } else {
+                queue.add(root[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            out.get(state).addAll(out.get(fail[state]));
+            int[] node = trie.get(state);
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = node[c];
+                int fallback = trie.get(fail[state])[c];
+                if (next < 0) {
+                    node[c] = fallback;
+                } else {
+                    fail[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.transitions = new int[trie.size() * ALPHABET];
+        this.outputs = new int[trie.size()][];
+        for (int s = 0; s < trie.size(); s++) {
+            System.arraycopy(trie.get(s), 0, transitions, s * ALPHABET, ALPHABET);
+            List<Integer> stateValues = out.get(s);
+            outputs[s] = new int[stateValues.size()];
+            for (int i = 0; i < stateValues.size(); i++) outputs[s][i] = stateValues.get(i);
+        }
+    }
+
+    // Smallest value of any keyword found in the text, or Integer.MAX_VALUE if none is
+    public int minValue(CharSequence text) {
+        if (text == null) return Integer.MAX_VALUE;
+        int best = Integer.MAX_VALUE;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int c = fold(text.charAt(i));
+            state = c < 0 ? 0 : transitions[state * ALPHABET + c];
+            for (int value : outputs[state]) {
+                if (value < best) best = value;
+            }
+        }
+        return best;
+    }
+
+    // True if the text contains any keyword
+    public boolean matches(CharSequence text) {
+        if (text == null) return false;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int c = fold(text.charAt(i));
+            state = c < 0 ? 0 : transitions[state * ALPHABET + c];
+            if (outputs[state].length > 0) return true;
+        }
+        return false;
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    private static int fold(char c) {
+        if (c >= ALPHABET) return -1;
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
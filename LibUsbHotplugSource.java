@@ -0,0 +1,129 @@
+// LibUsbHotplugSource.java
+import org.usb4java.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Event source driven by libusb hotplug callbacks.
+// An arrival triggers a rescan rather than reporting what libusb says about the device, so the device is
+// described by the configured scan backends (e.g. sysfs on Linux) like every other device.
+// Devices enumerate in stages (a block device and its capacity show up after the arrival event), so a few
+// follow-up rescans run after each arrival to pick up details that were not there yet.
+class LibUsbHotplugSource implements DeviceEventSource {
+    // How long one handleEvents call may block before re-checking the running flag
+    private static final long EVENT_TIMEOUT_MICROS = 250_000;
+    private static final int FOLLOW_UP_RESCANS = 2;
+    private static final long FOLLOW_UP_DELAY_NANOS = 1_000_000_000L;
+
+    private final Context context;
+    // Only touched by the event thread: libusb invokes callbacks from handleEvents
+    private final List<String> departed = new ArrayList<>();
+    private boolean arrived;
+    private int followUpsRemaining;
+    private long nextFollowUpNanos;
+    private HotplugCallbackHandle callbackHandle;
+    private Thread eventThread;
+    private volatile boolean running = false;
+
+    public LibUsbHotplugSource(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public String getName() {
+        return "libusb hotplug";
+    }
+
+    @Override
+    public synchronized boolean start(DeviceEventSink sink) {
+        if (running) return true;
+        if (context == null || !LibUsb.hasCapability(LibUsb.CAP_HAS_HOTPLUG)) return false;
+
+        HotplugCallbackHandle handle = new HotplugCallbackHandle();
+        int result = LibUsb.hotplugRegisterCallback(context,
+                LibUsb.HOTPLUG_EVENT_DEVICE_ARRIVED | LibUsb.HOTPLUG_EVENT_DEVICE_LEFT,
+                LibUsb.HOTPLUG_NO_FLAGS,
+                LibUsb.HOTPLUG_MATCH_ANY, LibUsb.HOTPLUG_MATCH_ANY, LibUsb.HOTPLUG_MATCH_ANY,
+                new Callback(), null, handle);
+        if (result != LibUsb.SUCCESS) {
+            System.err.println("Unable to register hotplug callback: " + LibUsb.strError(result));
+            return false;
+        }
+        callbackHandle = handle;
+        running = true;
+
+        eventThread = new Thread(() -> {
+            System.out.println("USB Monitor: Starting hotplug event thread");
+            while (running) {
+                try {
+                    int ret = LibUsb.handleEventsTimeout(context, EVENT_TIMEOUT_MICROS);
+                    if (ret != LibUsb.SUCCESS && ret != LibUsb.ERROR_INTERRUPTED) {
+                        System.err.println("Error handling USB events: " + LibUsb.strError(ret));
+                    }
+                    dispatchPending(sink);
+                } catch (Exception e) {
+                    System.err.println("Error in USB hotplug handling: " + e.getMessage());
+                }
+            }
+            System.out.println("USB Monitor: Hotplug event thread stopped");
+        }, "USB-Hotplug-Thread");
+
+        eventThread.setDaemon(true);
+        eventThread.start();
+        return true;
+    }
+
+    // Deliver events collected by the callback; runs outside the callback so the rescan may open devices.
+    // Removals go first, then one rescan covers every device that arrived during this handleEvents call.
+    private void dispatchPending(DeviceEventSink sink) {
+        for (String deviceId : departed) {
+            sink.deviceLeft(deviceId);
+        }
+        departed.clear();
+        long now = System.nanoTime();
+        if (arrived) {
+            arrived = false;
+            followUpsRemaining = FOLLOW_UP_RESCANS;
+            nextFollowUpNanos = now + FOLLOW_UP_DELAY_NANOS;
+            sink.rescanRequested();
+        } else if (followUpsRemaining > 0 && now - nextFollowUpNanos >= 0) {
+            followUpsRemaining--;
+            nextFollowUpNanos = now + FOLLOW_UP_DELAY_NANOS;
+            sink.rescanRequested();
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        // Deregistering wakes up a blocked handleEvents call
+        LibUsb.hotplugDeregisterCallback(context, callbackHandle);
+        // Pending events hold no libusb references, so nothing needs releasing if the join times out
+        if (eventThread != null && eventThread.isAlive()) {
+            try {
+                eventThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        eventThread = null;
+        callbackHandle = null;
+    }
+
+    // Hotplug callback: only records the event, scans happen after handleEvents returns
+    private class Callback implements HotplugCallback {
+        @Override
+        public int processEvent(Context ctx, Device device, int event, Object userData) {
+            if (event == LibUsb.HOTPLUG_EVENT_DEVICE_ARRIVED) {
+                arrived = true;
+            } else if (event == LibUsb.HOTPLUG_EVENT_DEVICE_LEFT) {
+                DeviceDescriptor desc = new DeviceDescriptor();
+                if (LibUsb.getDeviceDescriptor(device, desc) == LibUsb.SUCCESS) {
+                    UsbScanner.invalidate(device, desc);
+                    departed.add(UsbScanner.formatDeviceId(desc));
+                }
+            }
+            return 0; // keep the callback registered
+        }
+    }
+}
@@ -0,0 +1,58 @@
+// LogEncoder.java
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+// Writes log lines in the LogEntry.formatEntry() layout straight into a ByteBuffer in LogEntry.CHARSET.
+// The "[yyyy-MM-dd HH:mm:ss] USB " prefix is rebuilt only when the second changes, action names are
+// encoded once, and device text comes pre-encoded from MyDevice, so encoding an event allocates nothing
+// in steady state. Not thread-safe; the Logger's writer thread owns one instance.
+class LogEncoder {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final byte[] DEVICE_SEPARATOR = " - ".getBytes(LogEntry.CHARSET);
+    private static final int TIMESTAMP_START = 1;
+    private static final int TIMESTAMP_LENGTH = 19;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    // Timestamp digits are patched in as single bytes, which holds for any ASCII-compatible charset
+    private final byte[] prefix = "[0000-00-00 00:00:00] USB ".getBytes(LogEntry.CHARSET);
+    private final byte[] lineSeparator = System.lineSeparator().getBytes(LogEntry.CHARSET);
+    private final Map<String, byte[]> actions = new HashMap<>();
+    private long cachedSecond = Long.MIN_VALUE;
+
+    // Append one line; returns false and writes nothing if the buffer lacks room
+    public boolean encode(LogEntry entry, ByteBuffer out) {
+        byte[] action = action(entry.getAction());
+        byte[] device = entry.getDevice().logBytes();
+        int length = prefix.length + action.length + DEVICE_SEPARATOR.length + device.length + lineSeparator.length;
+        if (out.remaining() < length) return false;
+
+        updatePrefix(entry.getTimestampMillis());
+        out.put(prefix).put(action).put(DEVICE_SEPARATOR).put(device).put(lineSeparator);
+        return true;
+    }
+
+    private void updatePrefix(long timestampMillis) {
+        long second = Math.floorDiv(timestampMillis, 1000);
+        if (second == cachedSecond) return;
+        cachedSecond = second;
+        String text = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone).format(TIMESTAMP_FORMAT);
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            prefix[TIMESTAMP_START + i] = (byte) text.charAt(i);
+        }
+    }
+
+    private byte[] action(String action) {
+        byte[] bytes = actions.get(action);
+        if (bytes == null) {
+            bytes = action.getBytes(LogEntry.CHARSET);
+            // Actions are a handful of constants; the bound only guards against misuse
+            if (actions.size() < 64) actions.put(action, bytes);
+        }
+        return bytes;
+    }
+}
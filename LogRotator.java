@@ -0,0 +1,168 @@
+// LogRotator.java
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Rotates the text log by size and by day, gzips rotated segments in the background
+// and deletes the oldest segments beyond the retention limits.
+// Rotated segments are named <base>-<yyyy-MM-dd>-<NNN><ext>, then <base>-...<ext>.gz once compressed.
+class LogRotator implements AutoCloseable {
+    private static final long RETRY_DELAY_MS = 60_000;
+
+    private final File activeLog;
+    private final String baseName;
+    private final String extension;
+    private final long maxBytes;
+    private final boolean rotateDaily;
+    private final int maxSegments;
+    private final long maxTotalBytes;
+    private final ExecutorService compressor;
+    private LocalDate currentDay;
+    // After a failed rotation, no new attempt before this System.nanoTime()
+    private long retryAfterNanos;
+    private boolean retryPending;
+
+    // maxBytes, maxSegments or maxTotalBytes <= 0 disable that limit
+    public LogRotator(String logFilePath, long maxBytes, boolean rotateDaily, int maxSegments, long maxTotalBytes) {
+        this.activeLog = new File(logFilePath).getAbsoluteFile();
+        String name = activeLog.getName();
+        int dot = name.lastIndexOf('.');
+        this.baseName = dot > 0 ? name.substring(0, dot) : name;
+        this.extension = dot > 0 ? name.substring(dot) : "";
+        this.maxBytes = maxBytes;
+        this.rotateDaily = rotateDaily;
+        this.maxSegments = maxSegments;
+        this.maxTotalBytes = maxTotalBytes;
+        // Counted from startup: a file left over from an earlier day keeps today's first events with it
+        // instead of being rotated away by the first event, however small it is
+        this.currentDay = LocalDate.now();
+        this.compressor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "USB-Log-Compressor");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+
+        // Finish segments left uncompressed by an earlier run
+        for (File segment : listSegments()) {
+            if (!segment.getName().endsWith(".gz")) compressor.execute(() -> compress(segment));
+        }
+        compressor.execute(this::enforceRetention);
+    }
+
+    // True when the active file of the given size has to be rotated before the next write
+    public boolean shouldRotate(long currentSize) {
+        if (currentSize == 0) return false;
+        if (retryPending && System.nanoTime() - retryAfterNanos < 0) return false;
+        if (maxBytes > 0 && currentSize >= maxBytes) return true;
+        return rotateDaily && !LocalDate.now().equals(currentDay);
+    }
+
+    // Move the active file aside and queue it for compression; the caller must have closed it.
+    // If the move fails (e.g. another process has the file open on Windows) the file stays in place
+    // and shouldRotate() holds off for RETRY_DELAY_MS before the next attempt.
+    public void rotate() throws IOException {
+        File segment = nextSegmentFile(currentDay);
+        try {
+            Files.move(activeLog.toPath(), segment.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            retryPending = true;
+            retryAfterNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY_MS);
+            throw e;
+        }
+        retryPending = false;
+        currentDay = LocalDate.now();
+        compressor.execute(() -> {
+            compress(segment);
+            enforceRetention();
+        });
+    }
+
+    // Rotated segments, oldest first
+    public List<File> listSegments() {
+        File dir = activeLog.getParentFile();
+        String prefix = baseName + "-";
+        File[] files = dir.listFiles((d, name) -> name.startsWith(prefix)
+                && (name.endsWith(extension) || name.endsWith(extension + ".gz")));
+        if (files == null) return new ArrayList<>();
+        Arrays.sort(files);
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    // Let queued compression finish
+    @Override
+    public void close() {
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Numbers keep increasing within a day so names always sort oldest first
+    private File nextSegmentFile(LocalDate day) {
+        String dayPrefix = baseName + "-" + day + "-";
+        int last = 0;
+        for (File segment : listSegments()) {
+            String name = segment.getName();
+            if (!name.startsWith(dayPrefix)) continue;
+            int end = name.indexOf('.', dayPrefix.length());
+            try {
+                last = Math.max(last, Integer.parseInt(name.substring(dayPrefix.length(), end < 0 ? name.length() : end)));
+            } catch (NumberFormatException ignored) {}
+        }
+        return new File(activeLog.getParentFile(), String.format("%s%03d%s", dayPrefix, last + 1, extension));
+    }
+
+    private void compress(File segment) {
+        File target = new File(segment.getPath() + ".gz");
+        File temp = new File(segment.getPath() + ".gz.tmp");
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(segment);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), buffer.length)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+        } catch (IOException e) {
+            System.err.println("Error compressing " + segment.getName() + ": " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(segment.toPath());
+        } catch (IOException e) {
+            System.err.println("Error finishing compression of " + segment.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private void enforceRetention() {
+        List<File> segments = listSegments();
+        long total = 0;
+        for (File segment : segments) total += segment.length();
+
+        int i = 0;
+        while (i < segments.size()
+                && ((maxSegments > 0 && segments.size() - i > maxSegments)
+                    || (maxTotalBytes > 0 && total > maxTotalBytes))) {
+            File oldest = segments.get(i++);
+            total -= oldest.length();
+            if (!oldest.delete()) {
+                System.err.println("Unable to delete old log segment " + oldest.getName());
+            }
+        }
+    }
+}
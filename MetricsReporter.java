@@ -0,0 +1,8 @@
+// MetricsReporter.java
+import java.util.Map;
+
+// Receives periodic metric snapshots, e.g. to print them or ship them elsewhere
+interface MetricsReporter {
+    // Metric name to value, sorted by name
+    void report(Map<String, Number> metrics);
+}
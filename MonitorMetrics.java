@@ -0,0 +1,225 @@
+// MonitorMetrics.java
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Runtime metrics for the monitor pipeline, exposed over JMX and to pluggable reporters.
+// Recording only touches LongAdders and lock-free histograms, so it is safe on the poll thread.
+// Metrics recorded per scan or per event are looked up once and held, so recording never builds names.
+// Durations are recorded in microseconds.
+final class MonitorMetrics {
+    static final String OBJECT_NAME = "USBMonitor:type=Metrics";
+
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService reporterExecutor;
+    private static boolean jmxRegistered = false;
+
+    private static final Histogram scanTotalMicros = histogram("scan.total.micros");
+    private static final Histogram scanTotalDevices = histogram("scan.total.devices");
+    private static final Histogram listenerDispatchMicros = histogram("listener.dispatch.micros");
+    private static final Histogram logWriteMicros = histogram("logger.write.micros");
+    private static final Histogram logBatchEntries = histogram("logger.batch.entries");
+    // events.added, events.removed, events.changed, indexed by DeviceChange.Kind ordinal
+    private static final LongAdder[] eventCounters = new LongAdder[DeviceChange.Kind.values().length];
+
+    static {
+        for (DeviceChange.Kind kind : DeviceChange.Kind.values()) {
+            eventCounters[kind.ordinal()] = counter("events." + kind.name().toLowerCase());
+        }
+    }
+
+    private MonitorMetrics() {}
+
+    // Per-backend scan metrics, created once per backend
+    static final class ScanMetrics {
+        final Histogram micros;
+        final Histogram devices;
+        final LongAdder timeouts;
+        final LongAdder failures;
+
+        ScanMetrics(String backend) {
+            micros = histogram("scan." + backend + ".micros");
+            devices = histogram("scan." + backend + ".devices");
+            timeouts = counter("scan." + backend + ".timeouts");
+            failures = counter("scan." + backend + ".failures");
+        }
+
+        // One backend scan: how long it took and how many devices it returned
+        void record(long nanos, int deviceCount) {
+            micros.record(nanos / 1000);
+            devices.record(deviceCount);
+        }
+    }
+
+    // ---- recording ----
+
+    // A full merged scan over all backends
+    static void recordMergedScan(long nanos, int devices) {
+        scanTotalMicros.record(nanos / 1000);
+        scanTotalDevices.record(devices);
+    }
+
+    static void recordListenerDispatch(long nanos) {
+        listenerDispatchMicros.record(nanos / 1000);
+    }
+
+    static void recordLogWrite(long nanos, int entries) {
+        logWriteMicros.record(nanos / 1000);
+        logBatchEntries.record(entries);
+    }
+
+    static void recordEvent(DeviceChange.Kind kind) {
+        eventCounters[kind.ordinal()].increment();
+    }
+
+    static void increment(String counter) {
+        counter(counter).increment();
+    }
+
+    static void add(String counter, long delta) {
+        counter(counter).add(delta);
+    }
+
+    // Register a value that is read whenever metrics are reported, e.g. a queue depth
+    static void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    static Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    static LongAdder counter(String name) {
+        LongAdder adder = counters.get(name);
+        return adder != null ? adder : counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    // ---- reading ----
+
+    // All metrics flattened to name -> value; histograms expand to count/mean/p50/p90/p99/max
+    static Map<String, Number> snapshot() {
+        Map<String, Number> values = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> e : counters.entrySet()) {
+            values.put(e.getKey(), e.getValue().sum());
+        }
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            values.put(e.getKey(), e.getValue().getAsLong());
+        }
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            Histogram h = e.getValue();
+            String name = e.getKey();
+            values.put(name + ".count", h.getCount());
+            values.put(name + ".mean", h.getMean());
+            values.put(name + ".p50", h.getPercentile(0.50));
+            values.put(name + ".p90", h.getPercentile(0.90));
+            values.put(name + ".p99", h.getPercentile(0.99));
+            values.put(name + ".max", h.getMax());
+        }
+        return values;
+    }
+
+    // ---- exporting ----
+
+    // Expose every metric as an attribute of one MBean on the platform MBean server
+    static synchronized void registerJmx() {
+        if (jmxRegistered) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new MetricsMBean(), new ObjectName(OBJECT_NAME));
+            jmxRegistered = true;
+        } catch (Exception e) {
+            System.err.println("Unable to register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // Call the reporter with a snapshot every periodMillis on a background thread
+    static synchronized void addReporter(MetricsReporter reporter, long periodMillis) {
+        if (reporterExecutor == null) {
+            reporterExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "USB-Metrics-Reporter");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        reporterExecutor.scheduleAtFixedRate(() -> {
+            try {
+                reporter.report(snapshot());
+            } catch (Exception e) {
+                System.err.println("Metrics reporter failed: " + e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static synchronized void stopReporters() {
+        if (reporterExecutor != null) {
+            reporterExecutor.shutdownNow();
+            reporterExecutor = null;
+        }
+    }
+
+    // Read-only dynamic MBean whose attributes are the current snapshot keys
+    private static class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = snapshot().get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> values = snapshot();
+            AttributeList list = new AttributeList();
+            for (String name : attributes) {
+                Number value = values.get(name);
+                if (value != null) list.add(new Attribute(name, value));
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Number> values = snapshot();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (Map.Entry<String, Number> e : values.entrySet()) {
+                attributes[i++] = new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(),
+                        e.getKey(), true, false, false);
+            }
+            return new MBeanInfo(MonitorMetrics.class.getName(), "USB monitor pipeline metrics",
+                    attributes, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+// ParallelScanner.java
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs all scan backends at the same time, each with its own deadline.
+// A backend that times out or throws is reported and its last good result is used instead,
+// so one scan cycle takes as long as the slowest deadline rather than the sum of all backends.
+// A backend whose previous scan is still running is not started again until it finishes.
+// Until a backend has returned once there is no last good result, so its first scan is waited for up to
+// FIRST_SCAN_TIMEOUT_MS rather than reporting zero devices and announcing them all as new arrivals later.
+class ParallelScanner {
+    static final long FIRST_SCAN_TIMEOUT_MS = 30_000;
+
+    private final long defaultDeadlineMillis;
+    private final Map<String, Long> deadlines = new ConcurrentHashMap<>();
+    private final Map<DeviceSource, BackendState> states = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public ParallelScanner(long defaultDeadlineMillis) {
+        this.defaultDeadlineMillis = defaultDeadlineMillis;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "USB-Scan-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Override the deadline for the backend with the given name
+    public void setDeadline(String sourceName, long deadlineMillis) {
+        deadlines.put(sourceName, deadlineMillis);
+    }
+
+    // One result list per source, in the same order as the sources
+    public List<List<USBMonitor.DeviceInfo>> scan(List<DeviceSource> sources) {
+        List<CompletableFuture<List<USBMonitor.DeviceInfo>>> futures = new ArrayList<>(sources.size());
+        for (DeviceSource source : sources) {
+            futures.add(submit(source));
+        }
+
+        long start = System.nanoTime();
+        List<List<USBMonitor.DeviceInfo>> results = new ArrayList<>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            DeviceSource source = sources.get(i);
+            BackendState state = states.get(source);
+            long deadline = deadlines.getOrDefault(source.getName(), defaultDeadlineMillis);
+            if (state.lastGood == null) deadline = Math.max(deadline, FIRST_SCAN_TIMEOUT_MS);
+            long remaining = deadline - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            try {
+                results.add(futures.get(i).get(Math.max(0, remaining), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                System.err.println(source.getName() + " scan exceeded " + deadline + " ms, using last result");
+                state.metrics.timeouts.increment();
+                source.abort();
+                results.add(lastGood(state));
+            } catch (ExecutionException e) {
+                System.err.println(source.getName() + " scan failed, using last result: " + e.getCause());
+                state.metrics.failures.increment();
+                results.add(lastGood(state));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(lastGood(state));
+            }
+        }
+        states.keySet().retainAll(sources);
+        return results;
+    }
+
+    // Abort running scans and forget last results, e.g. when monitoring stops
+    public void reset() {
+        for (Map.Entry<DeviceSource, BackendState> e : states.entrySet()) {
+            if (e.getValue().inFlight != null) e.getKey().abort();
+        }
+        states.clear();
+    }
+
+    private CompletableFuture<List<USBMonitor.DeviceInfo>> submit(DeviceSource source) {
+        BackendState state = states.computeIfAbsent(source, s -> new BackendState(s.getName()));
+        synchronized (state) {
+            if (state.inFlight != null) return state.inFlight;
+            CompletableFuture<List<USBMonitor.DeviceInfo>> future = CompletableFuture.supplyAsync(() -> {
+                long scanStart = System.nanoTime();
+                List<USBMonitor.DeviceInfo> devices = source.scan();
+                state.metrics.record(System.nanoTime() - scanStart, devices.size());
+                return devices;
+            }, executor);
+            state.inFlight = future;
+            // Late results still count as the last good result for the next cycle
+            future.whenComplete((devices, error) -> {
+                synchronized (state) {
+                    if (error == null) state.lastGood = devices;
+                    state.inFlight = null;
+                }
+            });
+            return future;
+        }
+    }
+
+    // A backend that never returned (e.g. its tool is missing) contributes no devices
+    private static List<USBMonitor.DeviceInfo> lastGood(BackendState state) {
+        List<USBMonitor.DeviceInfo> devices = state.lastGood;
+        return devices != null ? devices : Collections.emptyList();
+    }
+
+    private static class BackendState {
+        final MonitorMetrics.ScanMetrics metrics;
+        // Null until the first scan succeeds
+        volatile List<USBMonitor.DeviceInfo> lastGood;
+        CompletableFuture<List<USBMonitor.DeviceInfo>> inFlight;
+
+        BackendState(String name) {
+            this.metrics = new MonitorMetrics.ScanMetrics(name);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+// PolicyEngine.java
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Checks every arriving or changed device against a DevicePolicy and reports alert/deny verdicts.
+// The monitor cannot block a device, so deny is reported like alert but marked as a violation of a hard rule.
+// The rule file is checked for changes in the background; a new version is compiled on the watcher thread
+// and swapped in with one volatile write, so event dispatch never waits for a reload. A file that fails
+// to compile leaves the previous rules in place.
+class PolicyEngine implements USBMonitor.USBEventListener, AutoCloseable {
+    static final String DEFAULT_FILE = "device_policy.txt";
+    private static final long CHECK_INTERVAL_MS = 2000;
+
+    // Called on the monitor's event thread for every device that is not allowed
+    interface ViolationListener {
+        void onViolation(USBMonitor.DeviceInfo device, DevicePolicy.Rule rule);
+    }
+
+    private final File file;
+    private final List<ViolationListener> listeners = new CopyOnWriteArrayList<>();
+    private final Histogram evaluateNanos = MonitorMetrics.histogram("policy.evaluate.ns");
+    private volatile DevicePolicy policy = DevicePolicy.allowAll();
+    private ScheduledExecutorService watcher;
+
+    // Only touched by reload(), which is synchronized
+    private long loadedModified = -1;
+    private long loadedLength = -1;
+
+    public PolicyEngine(File file) {
+        this.file = file;
+        MonitorMetrics.registerGauge("policy.rules", () -> policy.getRuleCount());
+        reload();
+    }
+
+    // Watch the file for changes
+    public synchronized void start() {
+        if (watcher != null) return;
+        watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "USB-Policy-Watcher");
+            t.setDaemon(true);
+            return t;
+        });
+        watcher.scheduleWithFixedDelay(this::reload, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void addViolationListener(ViolationListener listener) {
+        listeners.add(listener);
+    }
+
+    public DevicePolicy getPolicy() { return policy; }
+
+    // Replace the rules directly, e.g. from an admin console
+    public void setPolicy(DevicePolicy policy) {
+        this.policy = policy;
+    }
+
+    // Compile the file again if it changed since the last load; true if new rules were installed
+    public synchronized boolean reload() {
+        long modified = file.lastModified();
+        long length = file.length();
+        if (modified == loadedModified && length == loadedLength) return false;
+        loadedModified = modified;
+        loadedLength = length;
+        if (!file.isFile()) {
+            if (policy.getRuleCount() > 0) System.out.println("Device policy " + file.getName() + " removed, allowing all devices");
+            policy = DevicePolicy.allowAll();
+            return true;
+        }
+        try {
+            DevicePolicy loaded = DevicePolicy.load(file);
+            policy = loaded;
+            MonitorMetrics.increment("policy.reloads");
+            System.out.println("Loaded device policy " + file.getName() + " (" + loaded.getRuleCount() + " rules)");
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Keeping previous device policy, " + file.getName() + " is invalid: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Verdict for one device; reports it to the listeners unless it is allowed
+    public DevicePolicy.Rule check(USBMonitor.DeviceInfo device) {
+        long start = System.nanoTime();
+        DevicePolicy.Rule rule = policy.evaluate(device);
+        evaluateNanos.record(System.nanoTime() - start);
+        if (rule.verdict == DevicePolicy.Verdict.ALLOW) return rule;
+
+        MonitorMetrics.increment(rule.verdict == DevicePolicy.Verdict.DENY ? "policy.deny" : "policy.alert");
+        for (ViolationListener listener : listeners) {
+            try {
+                listener.onViolation(device, rule);
+            } catch (Exception e) {
+                System.err.println("Error in policy listener: " + e.getMessage());
+            }
+        }
+        return rule;
+    }
+
+    @Override
+    public void onDeviceConnected(USBMonitor.DeviceInfo device) {
+        check(device);
+    }
+
+    @Override
+    public void onDeviceDisconnected(USBMonitor.DeviceInfo device) {}
+
+    @Override
+    public void onDeviceChanged(USBMonitor.DeviceInfo previous, USBMonitor.DeviceInfo current) {
+        check(current);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+// PollingEventSource.java
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Fallback event source that re-enumerates devices on an adaptive interval.
+// After a change it polls at the minimum interval for a short burst (devices often enumerate in stages),
+// then backs off exponentially towards the maximum while nothing changes.
+// Every delay is jittered so a fleet of machines started together does not poll in lockstep, but never
+// beyond the maximum, which bounds how long a change on an idle machine goes unnoticed.
+class PollingEventSource implements DeviceEventSource {
+    private static final int BURST_POLLS = 2;
+    private static final double BACKOFF_FACTOR = 2.0;
+    private static final double JITTER = 0.1;
+
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private ScheduledExecutorService scheduler;
+    private DeviceEventSink sink;
+    private volatile boolean running = false;
+
+    // Only touched on the scheduler thread
+    private long intervalMillis;
+    private int burstRemaining;
+    private volatile long currentDelayMillis;
+
+    // Fixed interval
+    public PollingEventSource(long intervalMillis) {
+        this(intervalMillis, intervalMillis);
+    }
+
+    public PollingEventSource(long minIntervalMillis, long maxIntervalMillis) {
+        if (minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis) {
+            throw new IllegalArgumentException("Invalid poll intervals " + minIntervalMillis + ".." + maxIntervalMillis);
+        }
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        MonitorMetrics.registerGauge("poll.interval.ms", () -> currentDelayMillis);
+    }
+
+    @Override
+    public String getName() {
+        if (minIntervalMillis == maxIntervalMillis) return "polling every " + minIntervalMillis + " ms";
+        return "adaptive polling every " + minIntervalMillis + "-" + maxIntervalMillis + " ms";
+    }
+
+    // Delay chosen for the next poll, including jitter
+    public long getCurrentDelayMillis() {
+        return currentDelayMillis;
+    }
+
+    @Override
+    public synchronized boolean start(DeviceEventSink sink) {
+        if (running) return true;
+        running = true;
+        this.sink = sink;
+        intervalMillis = minIntervalMillis;
+        burstRemaining = 0;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "USB-Polling-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        System.out.println("USB Monitor: Starting device polling thread");
+        scheduleNext();
+        return true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            try {
+                scheduler.awaitTermination(1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler = null;
+            System.out.println("USB Monitor: Polling thread stopped");
+        }
+    }
+
+    private void poll() {
+        if (!running) return;
+        boolean changed = false;
+        try {
+            changed = sink.rescanRequested();
+        } catch (Exception e) {
+            System.err.println("Error in USB polling: " + e.getMessage());
+        }
+
+        if (changed) {
+            intervalMillis = minIntervalMillis;
+            burstRemaining = BURST_POLLS;
+        } else if (burstRemaining > 0) {
+            burstRemaining--;
+        } else {
+            intervalMillis = Math.min(maxIntervalMillis, (long) (intervalMillis * BACKOFF_FACTOR));
+        }
+        scheduleNext();
+    }
+
+    private synchronized void scheduleNext() {
+        if (!running || scheduler == null) return;
+        double jitter = 1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        currentDelayMillis = Math.max(1, Math.min(maxIntervalMillis, (long) (intervalMillis * jitter)));
+        scheduler.schedule(this::poll, currentDelayMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,227 @@
+// SimulatedDeviceSource.java
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+// Synthetic device backend for testing without hardware. A seeded population of devices changes step by step
+// following a churn pattern, so every run with the same settings produces the same sequence:
+//   STEADY     changesPerStep random devices unplug or come back each step
+//   BURST      quiet, then every BURST_INTERVAL steps changesPerStep * BURST_INTERVAL devices change at once
+//   FLAPPING   a fixed set of changesPerStep devices toggles every step, the rest stay put
+//   HUB_STORM  every HUB_INTERVAL steps a hub of HUB_SIZE devices drops out and returns on the next step
+//
+// Each scan() advances one step. Registered as the event source as well, it requests a rescan every
+// stepMillis, which drives the whole monitor pipeline at changesPerStep * 1000 / stepMillis events per second:
+//   SimulatedDeviceSource sim = new SimulatedDeviceSource(500, SimulatedDeviceSource.Pattern.STEADY, 10, 10, 42);
+//   USBMonitor.setDeviceSources(Collections.singletonList(sim));
+//   USBMonitor.setEventSource(sim);
+class SimulatedDeviceSource implements DeviceSource, DeviceEventSource {
+    enum Pattern { STEADY, BURST, FLAPPING, HUB_STORM }
+
+    static final int BURST_INTERVAL = 50;
+    static final int HUB_INTERVAL = 10;
+    static final int HUB_SIZE = 32;
+
+    private static final String[] VENDORS = { "046D", "0781", "0951", "045E", "05E3", "0BDA", "04E8", "1A86" };
+    private static final String[] MANUFACTURERS = {
+        "Logitech", "SanDisk", "Kingston", "Microsoft", "Genesys Logic", "Realtek", "Samsung", "QinHeng Electronics"
+    };
+    private static final String[][] PRODUCTS = {
+        { "USB Keyboard", "Human Interface Device (HID)" },
+        { "Optical Mouse", "Human Interface Device (HID)" },
+        { "Ultra Flash Drive", "Mass Storage" },
+        { "HD Webcam", "Video Device" },
+        { "USB Hub", "USB Hub" },
+        { "Gamepad Controller", "Human Interface Device (HID)" },
+        { "USB Audio Device", "Audio Device" },
+        { "Portable SSD", "Mass Storage" },
+        { "Serial Adapter", "Communications Device" }
+    };
+
+    private final Pattern pattern;
+    private final int changesPerStep;
+    private final long stepMillis;
+    private final USBMonitor.DeviceInfo[] population;
+    private final Random random;
+
+    // Guarded by this
+    private final boolean[] present;
+    // System.nanoTime() of the step that last connected or disconnected each device, 0 if it never changed
+    private final long[] changedNanos;
+    private final int[] order;
+    private long step;
+    private int droppedHub = -1;
+
+    private long stepStartNanos;
+    private volatile long changeCount;
+    private volatile boolean running = false;
+    private Thread stepThread;
+
+    // All devices start connected; up to 65536 devices
+    public SimulatedDeviceSource(int devices, Pattern pattern, int changesPerStep, long stepMillis, long seed) {
+        if (devices < 1 || devices > 0x10000) throw new IllegalArgumentException("Device count must be 1..65536");
+        if (stepMillis <= 0) throw new IllegalArgumentException("Step interval must be positive");
+        this.pattern = pattern;
+        this.changesPerStep = Math.max(0, Math.min(changesPerStep, devices));
+        this.stepMillis = stepMillis;
+        this.random = new Random(seed);
+        this.population = new USBMonitor.DeviceInfo[devices];
+        this.present = new boolean[devices];
+        this.changedNanos = new long[devices];
+        this.order = new int[devices];
+        for (int i = 0; i < devices; i++) {
+            population[i] = generate(i);
+            present[i] = true;
+            order[i] = i;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "simulated " + pattern.name().toLowerCase().replace('_', '-') + " (" + population.length + " devices)";
+    }
+
+    // Advance one step and list the devices now present
+    @Override
+    public synchronized List<USBMonitor.DeviceInfo> scan() {
+        stepStartNanos = System.nanoTime();
+        advance();
+        step++;
+        List<USBMonitor.DeviceInfo> devices = new ArrayList<>(population.length);
+        for (int i = 0; i < population.length; i++) {
+            if (present[i]) devices.add(population[i]);
+        }
+        return devices;
+    }
+
+    @Override
+    public synchronized boolean start(DeviceEventSink sink) {
+        if (running) return true;
+        running = true;
+        stepThread = new Thread(() -> runSteps(sink), "USB-Simulator-Thread");
+        stepThread.setDaemon(true);
+        stepThread.start();
+        return true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (stepThread != null) {
+            stepThread.interrupt();
+            stepThread = null;
+        }
+    }
+
+    // When the step that last connected or disconnected this device started, for measuring how long its
+    // events take to reach listeners; 0 for a device that has not changed or is not from this source
+    public synchronized long getChangeNanos(USBMonitor.DeviceInfo device) {
+        String id = device.getDeviceId();
+        int colon = id.indexOf(':');
+        try {
+            int index = Integer.parseInt(id.substring(colon + 1), 16);
+            return index < changedNanos.length ? changedNanos[index] : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Devices added or removed so far
+    public long getChangeCount() { return changeCount; }
+
+    // Average changes per second the pattern produces at this step interval
+    public double getEventRate() {
+        return changesPerStep * 1000.0 / stepMillis;
+    }
+
+    public synchronized int getPresentCount() {
+        int count = 0;
+        for (boolean p : present) if (p) count++;
+        return count;
+    }
+
+    private void runSteps(DeviceEventSink sink) {
+        long stepNanos = stepMillis * 1_000_000;
+        long next = System.nanoTime();
+        while (running) {
+            try {
+                sink.rescanRequested();
+            } catch (Exception e) {
+                System.err.println("Simulated rescan failed: " + e.getMessage());
+            }
+            next += stepNanos;
+            long wait = next - System.nanoTime();
+            // Fell behind: skip ahead instead of bursting to catch up
+            if (wait < 0) next = System.nanoTime();
+            else LockSupport.parkNanos(wait);
+            if (Thread.currentThread().isInterrupted()) break;
+        }
+    }
+
+    // Caller holds the lock
+    private void advance() {
+        switch (pattern) {
+            case STEADY:
+                toggleRandom(changesPerStep);
+                break;
+            case BURST:
+                if (step % BURST_INTERVAL == BURST_INTERVAL - 1) {
+                    toggleRandom(Math.min(population.length, changesPerStep * BURST_INTERVAL));
+                }
+                break;
+            case FLAPPING:
+                // The first changesPerStep devices are the flaky ones
+                for (int i = 0; i < changesPerStep; i++) toggle(i);
+                break;
+            case HUB_STORM:
+                if (droppedHub >= 0) {
+                    setHub(droppedHub, true);
+                    droppedHub = -1;
+                } else if (step % HUB_INTERVAL == HUB_INTERVAL - 1) {
+                    droppedHub = random.nextInt((population.length + HUB_SIZE - 1) / HUB_SIZE);
+                    setHub(droppedHub, false);
+                }
+                break;
+        }
+    }
+
+    // Toggle count distinct random devices (partial Fisher-Yates over a reused index array)
+    private void toggleRandom(int count) {
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(order.length - i);
+            int index = order[j];
+            order[j] = order[i];
+            order[i] = index;
+            toggle(index);
+        }
+    }
+
+    private void setHub(int hub, boolean connected) {
+        int end = Math.min(population.length, (hub + 1) * HUB_SIZE);
+        for (int i = hub * HUB_SIZE; i < end; i++) {
+            if (present[i] != connected) toggle(i);
+        }
+    }
+
+    private void toggle(int index) {
+        present[index] = !present[index];
+        changedNanos[index] = stepStartNanos;
+        changeCount++;
+    }
+
+    // Device IDs are unique: the product ID is the index within the population
+    private USBMonitor.DeviceInfo generate(int index) {
+        int vendor = random.nextInt(VENDORS.length);
+        String[] product = PRODUCTS[random.nextInt(PRODUCTS.length)];
+        boolean storage = product[1].equals("Mass Storage");
+        return USBMonitor.DeviceInfo.of(
+            String.format("%s:%04X", VENDORS[vendor], index),
+            product[0],
+            MANUFACTURERS[vendor],
+            random.nextInt(4) == 0 ? null : String.format("SIM%08X", random.nextInt()),
+            product[1],
+            storage ? (8 << random.nextInt(6)) + " GB" : null
+        );
+    }
+}
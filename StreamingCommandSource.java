@@ -0,0 +1,195 @@
+// StreamingCommandSource.java
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Event source that keeps one external monitor command running and parses its output as it arrives,
+// instead of spawning a scan process on every poll.
+// The output is read as blocks of KEY=VALUE lines separated by blank lines, the format of
+// `udevadm monitor --property`; other lines are ignored. Add and change events trigger a rescan, one per
+// burst, so devices are described by the configured scan backends and not by the event's properties;
+// remove events are applied directly. If the command exits it is restarted with exponential backoff,
+// followed by a rescan to pick up anything missed while it was down.
+class StreamingCommandSource implements DeviceEventSource {
+    private static final long MIN_RESTART_DELAY_MS = 1000;
+    private static final long MAX_RESTART_DELAY_MS = 60000;
+    // A command that stayed up this long is considered healthy again
+    private static final long STABLE_RUN_MS = 60000;
+
+    private final List<String> command;
+    // DEVPATH -> device ID, since remove events usually carry no ID_* properties
+    private final Map<String, String> knownPaths = new HashMap<>();
+    private Thread readerThread;
+    private volatile Process process;
+    private volatile boolean running = false;
+
+    public StreamingCommandSource(List<String> command) {
+        this.command = new ArrayList<>(command);
+    }
+
+    // udev events for whole USB devices (not their interfaces)
+    static StreamingCommandSource udevadm() {
+        return new StreamingCommandSource(Arrays.asList(
+                "udevadm", "monitor", "--udev", "--property", "--subsystem-match=usb/usb_device"));
+    }
+
+    @Override
+    public String getName() {
+        return "streaming " + String.join(" ", command);
+    }
+
+    @Override
+    public synchronized boolean start(DeviceEventSink sink) {
+        if (running) return true;
+        try {
+            process = launch();
+        } catch (IOException e) {
+            System.err.println("Unable to start " + command.get(0) + ": " + e.getMessage());
+            return false;
+        }
+        running = true;
+
+        readerThread = new Thread(() -> superviseCommand(sink), "USB-Stream-Thread");
+        readerThread.setDaemon(true);
+        readerThread.start();
+        return true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        Process p = process;
+        if (p != null) p.destroy();
+        if (readerThread != null) {
+            readerThread.interrupt();
+            try {
+                readerThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            readerThread = null;
+        }
+        process = null;
+    }
+
+    // Read the running command until it exits, then restart it with backoff
+    private void superviseCommand(DeviceEventSink sink) {
+        long restartDelay = MIN_RESTART_DELAY_MS;
+        while (running) {
+            long started = System.currentTimeMillis();
+            Process p = process;
+            try {
+                readEvents(p, sink);
+            } catch (IOException e) {
+                if (running) System.err.println("Error reading " + command.get(0) + " output: " + e.getMessage());
+            }
+            p.destroy();
+            if (!running) break;
+
+            if (System.currentTimeMillis() - started >= STABLE_RUN_MS) restartDelay = MIN_RESTART_DELAY_MS;
+            System.err.println(command.get(0) + " exited, restarting in " + restartDelay + " ms");
+            MonitorMetrics.increment("stream.restarts");
+            try {
+                Thread.sleep(restartDelay);
+                restartDelay = Math.min(MAX_RESTART_DELAY_MS, restartDelay * 2);
+                process = launch();
+                sink.rescanRequested();
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException e) {
+                System.err.println("Unable to restart " + command.get(0) + ": " + e.getMessage());
+            } catch (Exception e) {
+                System.err.println("Error in USB rescan: " + e.getMessage());
+            }
+        }
+        System.out.println("USB Monitor: Stream reader stopped");
+    }
+
+    private Process launch() throws IOException {
+        return new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private void readEvents(Process p, DeviceEventSink sink) throws IOException {
+        Map<String, String> properties = new HashMap<>();
+        boolean rescan = false;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    if (!properties.isEmpty()) rescan |= dispatch(properties, sink);
+                    properties.clear();
+                    // Wait for the end of a burst, e.g. a hub and everything behind it
+                    if (rescan && !reader.ready()) {
+                        rescan = false;
+                        rescan(sink);
+                    }
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                if (eq > 0) properties.put(line.substring(0, eq), line.substring(eq + 1));
+            }
+            if (!properties.isEmpty()) rescan |= dispatch(properties, sink);
+        }
+        if (rescan) rescan(sink);
+    }
+
+    // Apply one property block; true if it needs a rescan (a device was added or changed)
+    boolean dispatch(Map<String, String> properties, DeviceEventSink sink) {
+        String devType = properties.get("DEVTYPE");
+        if (devType != null && !devType.equals("usb_device")) return false;
+        String action = properties.get("ACTION");
+        String devPath = properties.get("DEVPATH");
+
+        if ("add".equals(action) || "change".equals(action)) {
+            String deviceId = parseDeviceId(properties);
+            if (deviceId != null && devPath != null) knownPaths.put(devPath, deviceId);
+            return true;
+        }
+        if ("remove".equals(action)) {
+            String deviceId = devPath != null ? knownPaths.remove(devPath) : null;
+            if (deviceId == null) deviceId = parseDeviceId(properties);
+            try {
+                if (deviceId != null) sink.deviceLeft(deviceId);
+            } catch (Exception e) {
+                System.err.println("Error handling remove event: " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private static void rescan(DeviceEventSink sink) {
+        try {
+            sink.rescanRequested();
+        } catch (Exception e) {
+            System.err.println("Error in USB rescan: " + e.getMessage());
+        }
+    }
+
+    // VID:PID as sysfs and libusb report it, from ID_VENDOR_ID/ID_MODEL_ID or PRODUCT=vid/pid/bcd
+    static String parseDeviceId(Map<String, String> properties) {
+        String vendorId = properties.get("ID_VENDOR_ID");
+        String productId = properties.get("ID_MODEL_ID");
+        if (vendorId == null || productId == null) {
+            String product = properties.get("PRODUCT");
+            if (product == null) return null;
+            String[] parts = product.split("/");
+            if (parts.length < 2) return null;
+            vendorId = parts[0];
+            productId = parts[1];
+        }
+        try {
+            return String.format("%04X:%04X", Integer.parseInt(vendorId, 16), Integer.parseInt(productId, 16));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
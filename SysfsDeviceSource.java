@@ -0,0 +1,147 @@
+// SysfsDeviceSource.java
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// USB scanning from the Linux sysfs tree, no native library or subprocess needed
+class SysfsDeviceSource implements DeviceSource {
+    static final String DEFAULT_ROOT = "/sys/bus/usb/devices";
+    private static final long SECTOR_SIZE = 512;
+
+    private final File root;
+    // Reused for every attribute read, guarded by scan()
+    private final byte[] readBuffer = new byte[512];
+
+    public SysfsDeviceSource() {
+        this(new File(DEFAULT_ROOT));
+    }
+
+    // Root can point at a fixture directory laid out like /sys/bus/usb/devices
+    public SysfsDeviceSource(File root) {
+        this.root = root;
+    }
+
+    // True when the default sysfs tree exists on this host
+    static boolean isSupported() {
+        return new File(DEFAULT_ROOT).isDirectory();
+    }
+
+    @Override
+    public String getName() {
+        return "sysfs";
+    }
+
+    @Override
+    public synchronized List<USBMonitor.DeviceInfo> scan() {
+        List<USBMonitor.DeviceInfo> devices = new ArrayList<>();
+        String[] entries = root.list();
+        if (entries == null) throw new UncheckedIOException(new IOException("Cannot list " + root));
+
+        for (String entry : entries) {
+            // Interface directories look like 1-1:1.0 and are read as part of their device
+            if (entry.indexOf(':') >= 0) continue;
+            USBMonitor.DeviceInfo info = readDevice(new File(root, entry));
+            if (info != null) devices.add(info);
+        }
+        return devices;
+    }
+
+    // Build a device from one sysfs device directory, null if it has no IDs
+    private USBMonitor.DeviceInfo readDevice(File dir) {
+        String vendorId = readAttribute(dir, "idVendor");
+        String productId = readAttribute(dir, "idProduct");
+        if (vendorId == null || productId == null) return null;
+
+        String manufacturer = readAttribute(dir, "manufacturer");
+        String product = readAttribute(dir, "product");
+        String serial = readAttribute(dir, "serial");
+        int deviceClass = parseHex(readAttribute(dir, "bDeviceClass"));
+
+        long capacityBytes = findBlockDeviceSize(dir);
+        String deviceType = capacityBytes >= 0 ? "Mass Storage"
+                : UsbScanner.determineDeviceType(deviceClass, readInterfaceClasses(dir, deviceClass));
+
+        return USBMonitor.DeviceInfo.of(
+            vendorId.toUpperCase() + ":" + productId.toUpperCase(),
+            product != null ? product : "USB Device",
+            manufacturer != null ? manufacturer : "Unknown Manufacturer",
+            serial != null ? serial : "Unknown",
+            deviceType,
+            capacityBytes >= 0 ? USBMonitor.formatCapacity(capacityBytes) : null
+        );
+    }
+
+    // Size in bytes of the first block device under <dev>/<dev>:*/host*/target*/*/block, -1 if none
+    private long findBlockDeviceSize(File dir) {
+        String prefix = dir.getName() + ":";
+        for (File iface : listChildren(dir, prefix)) {
+            for (File host : listChildren(iface, "host")) {
+                for (File target : listChildren(host, "target")) {
+                    for (File lun : listChildren(target, null)) {
+                        for (File block : listChildren(new File(lun, "block"), null)) {
+                            String sectors = readAttribute(block, "size");
+                            if (sectors == null) continue;
+                            try {
+                                return Long.parseLong(sectors) * SECTOR_SIZE;
+                            } catch (NumberFormatException ignored) {}
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    // bInterfaceClass of each <dev>:<config>.<n> interface, only read when the device class defers to them
+    private int[] readInterfaceClasses(File dir, int deviceClass) {
+        if (!UsbScanner.definedPerInterface(deviceClass)) return new int[0];
+        File[] interfaces = listChildren(dir, dir.getName() + ":");
+        Arrays.sort(interfaces);
+        int[] classes = new int[interfaces.length];
+        int count = 0;
+        for (File iface : interfaces) {
+            int interfaceClass = parseHex(readAttribute(iface, "bInterfaceClass"));
+            if (interfaceClass >= 0) classes[count++] = interfaceClass;
+        }
+        return Arrays.copyOf(classes, count);
+    }
+
+    private static File[] listChildren(File dir, String prefix) {
+        File[] children = dir.listFiles(f -> f.isDirectory() && (prefix == null || f.getName().startsWith(prefix)));
+        return children != null ? children : new File[0];
+    }
+
+    // Read a single-line attribute file, null if missing or empty
+    private String readAttribute(File dir, String name) {
+        File file = new File(dir, name);
+        if (!file.isFile()) return null;
+
+        int length = 0;
+        try (FileInputStream in = new FileInputStream(file)) {
+            int n;
+            while (length < readBuffer.length && (n = in.read(readBuffer, length, readBuffer.length - length)) > 0) {
+                length += n;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        while (length > 0 && (readBuffer[length - 1] == '\n' || readBuffer[length - 1] == ' ')) length--;
+        if (length == 0) return null;
+        return new String(readBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int parseHex(String value) {
+        if (value == null) return -1;
+        try {
+            return Integer.parseInt(value, 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
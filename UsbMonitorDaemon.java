@@ -0,0 +1,224 @@
+// UsbMonitorDaemon.java
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+// Headless entry point: runs USBMonitor without loading any Swing/AWT classes and
+// streams device events as JSON lines to stdout or a file. Status messages go to stderr.
+//
+// Usage: java UsbMonitorDaemon [--out FILE] [--sources sysfs,libusb,wmi,simulated] [--no-libusb] [--metrics SECONDS] [--events-command CMD] [--agent HOST:PORT [--agent-id ID]] [--policy FILE] [--debounce MS]
+public class UsbMonitorDaemon {
+    private static final int AGENT_BUFFER_EVENTS = 10000;
+
+    private final Writer out;
+
+    UsbMonitorDaemon(Writer out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        String outFile = null;
+        List<DeviceSource> sources = null;
+        boolean libusb = true;
+        long metricsSeconds = 0;
+        String eventsCommand = null;
+        String collector = null;
+        String agentId = null;
+        String policyFile = null;
+        long debounceMillis = -1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out":
+                    outFile = args[++i];
+                    break;
+                case "--sources":
+                    sources = parseSources(args[++i]);
+                    break;
+                case "--no-libusb":
+                    libusb = false;
+                    break;
+                case "--metrics":
+                    metricsSeconds = Long.parseLong(args[++i]);
+                    break;
+                case "--events-command":
+                    eventsCommand = args[++i];
+                    break;
+                case "--agent":
+                    collector = args[++i];
+                    break;
+                case "--agent-id":
+                    agentId = args[++i];
+                    break;
+                case "--policy":
+                    policyFile = args[++i];
+                    break;
+                case "--debounce":
+                    debounceMillis = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    System.err.println("Usage: java UsbMonitorDaemon [--out FILE] [--sources sysfs,libusb,wmi,simulated] [--no-libusb] [--metrics SECONDS] [--events-command CMD] [--agent HOST:PORT [--agent-id ID]] [--policy FILE] [--debounce MS]");
+                    System.exit(2);
+            }
+        }
+
+        // stdout carries only the event stream: keep a handle on it and send every status line
+        // printed by the monitor, sources and policy engine to stderr
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                outFile != null ? new FileOutputStream(outFile, true) : stdout, StandardCharsets.UTF_8));
+        UsbMonitorDaemon daemon = new UsbMonitorDaemon(writer);
+
+        if (sources != null) USBMonitor.setDeviceSources(sources);
+        USBMonitor.setLibusbEnabled(libusb);
+        // Same window for connects and disconnects; 0 reports every bounce
+        if (debounceMillis >= 0) USBMonitor.setDebounce(debounceMillis, debounceMillis, 6, 30000);
+        if (eventsCommand != null) {
+            USBMonitor.setEventSource(new StreamingCommandSource(Arrays.asList(eventsCommand.trim().split("\\s+"))));
+        }
+        // Metrics go to stderr so they never mix with the event stream
+        if (metricsSeconds > 0) {
+            MonitorMetrics.addReporter(metrics -> System.err.println("metrics " + metrics), metricsSeconds * 1000);
+        }
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        // SIGTERM/SIGINT run shutdown hooks: stop monitoring, then flush the stream
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            USBMonitor.cleanup();
+            daemon.close();
+            stopped.countDown();
+        }, "USB-Daemon-Shutdown"));
+
+        // Agent mode: also forward every event to a collector; closed (and drained) by cleanup()
+        if (collector != null) {
+            int colon = collector.lastIndexOf(':');
+            EventAgent agent = new EventAgent(collector.substring(0, colon), Integer.parseInt(collector.substring(colon + 1)),
+                    agentId != null ? agentId : InetAddress.getLocalHost().getHostName(), AGENT_BUFFER_EVENTS);
+            agent.start();
+            USBMonitor.addEventListener(agent);
+            USBMonitor.addShutdownResource(agent);
+        }
+
+        USBMonitor.addEventListener(new USBMonitor.USBEventListener() {
+            public void onDeviceConnected(USBMonitor.DeviceInfo device) {
+                daemon.write("connected", device);
+            }
+
+            public void onDeviceDisconnected(USBMonitor.DeviceInfo device) {
+                daemon.write("disconnected", device);
+            }
+
+            public void onDeviceChanged(USBMonitor.DeviceInfo previous, USBMonitor.DeviceInfo current) {
+                daemon.write("changed", current);
+            }
+
+            public void onDeviceFlapping(USBMonitor.DeviceInfo device, int transitions, long windowMillis) {
+                daemon.write("flapping", device);
+            }
+        });
+
+        // Policy violations follow the device's own event as "alert"/"deny" events naming the rule that matched
+        PolicyEngine policy = null;
+        if (policyFile != null) {
+            policy = new PolicyEngine(new File(policyFile));
+            policy.addViolationListener((device, rule) -> daemon.write(rule.verdict.name().toLowerCase(), device, rule.toString()));
+            policy.start();
+            USBMonitor.addEventListener(policy);
+            USBMonitor.addShutdownResource(policy);
+        }
+
+        // Devices already present are reported before the event source starts, so none is also reported as connected
+        PolicyEngine initialPolicy = policy;
+        USBMonitor.initialize(devices -> {
+            for (USBMonitor.DeviceInfo device : devices.values()) {
+                daemon.write("present", device);
+                if (initialPolicy != null) initialPolicy.check(device);
+            }
+        });
+
+        stopped.await();
+    }
+
+    private static List<DeviceSource> parseSources(String list) {
+        List<DeviceSource> sources = new ArrayList<>();
+        for (String name : list.split(",")) {
+            switch (name.trim()) {
+                case "sysfs": sources.add(new SysfsDeviceSource()); break;
+                case "libusb": sources.add(new UsbScanner()); break;
+                case "wmi": sources.add(new WmiUsbScanner()); break;
+                // 200 synthetic devices, one random device plugged or unplugged per scan
+                case "simulated": sources.add(new SimulatedDeviceSource(200, SimulatedDeviceSource.Pattern.STEADY, 1, 1000, 42)); break;
+                default: throw new IllegalArgumentException("Unknown device source: " + name);
+            }
+        }
+        return sources;
+    }
+
+    // One JSON object per line, flushed immediately so consumers see events as they happen
+    void write(String event, USBMonitor.DeviceInfo device) {
+        write(event, device, null);
+    }
+
+    synchronized void write(String event, USBMonitor.DeviceInfo device, String rule) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"ts\":\"").append(Instant.now()).append('"');
+        field(sb, "event", event);
+        field(sb, "id", device.getDeviceId());
+        field(sb, "name", device.getProductName());
+        field(sb, "manufacturer", device.getManufacturer());
+        field(sb, "serial", device.getSerialNumber());
+        field(sb, "type", device.getDeviceType());
+        field(sb, "capacity", device.getStorageCapacity());
+        if (rule != null) field(sb, "rule", rule);
+        sb.append("}\n");
+        try {
+            out.write(sb.toString());
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing event stream: " + e.getMessage());
+        }
+    }
+
+    synchronized void close() {
+        try {
+            out.flush();
+            out.close();
+        } catch (IOException ignored) {}
+    }
+
+    private static void field(StringBuilder sb, String name, String value) {
+        sb.append(",\"").append(name).append("\":");
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -4,14 +4,30 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 // Representation of a USB device
 class MyDevice {
@@ -21,6 +37,8 @@ class MyDevice {
     private String deviceType;
     private String serialNumber;
     private String storageCapacity;
+    // toString() in the text log's charset, built on first use by LogEncoder
+    private byte[] logBytes;
 // Constructor
     public MyDevice(String name, String manufacturer, String deviceId, String deviceType, String serialNumber, String storageCapacity) {
         this.name = name;
@@ -41,160 +59,704 @@ class MyDevice {
     // Format device info as a string
     @Override
     public String toString() {
-        return String.format("Device: %s, Manufacturer: %s, ID: %s, Type: %s, Serial: %s, Capacity: %s",
-                name, manufacturer, deviceId, deviceType, 
-                serialNumber != null ? serialNumber : "N/A", 
-                storageCapacity != null ? storageCapacity : "N/A");
+        return "Device: " + name + ", Manufacturer: " + manufacturer + ", ID: " + deviceId + ", Type: " + deviceType
+                + ", Serial: " + (serialNumber != null ? serialNumber : "N/A")
+                + ", Capacity: " + (storageCapacity != null ? storageCapacity : "N/A");
+    }
+
+    // The fields never change, so the encoded form is computed once per device
+    byte[] logBytes() {
+        byte[] bytes = logBytes;
+        if (bytes == null) {
+            bytes = toString().getBytes(LogEntry.CHARSET);
+            logBytes = bytes;
+        }
+        return bytes;
+    }
+
+    // Same details in every field
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MyDevice)) return false;
+        MyDevice other = (MyDevice) o;
+        return Objects.equals(name, other.name)
+            && Objects.equals(manufacturer, other.manufacturer)
+            && Objects.equals(deviceId, other.deviceId)
+            && Objects.equals(deviceType, other.deviceType)
+            && Objects.equals(serialNumber, other.serialNumber)
+            && Objects.equals(storageCapacity, other.storageCapacity);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, manufacturer, deviceId, deviceType, serialNumber, storageCapacity);
     }
 }
 
 // Log entry representing a device event
 class LogEntry {
+    // Charset of usb_log.txt. The log has always been written in the platform charset (FileWriter's default,
+    // e.g. cp1252 on Windows), so existing files with non-ASCII device names must be read back the same way.
+    static final Charset CHARSET = Charset.defaultCharset();
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     private MyDevice device;
     private String action;
-    private LocalDateTime timestamp;
+    // Epoch milliseconds; LocalDateTime is only created when asked for
+    private long timestampMillis;
 
 // Constructor
     public LogEntry(MyDevice device, String action) {
+        this(device, action, System.currentTimeMillis());
+    }
+
+    public LogEntry(MyDevice device, String action, LocalDateTime timestamp) {
+        this(device, action, timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    public LogEntry(MyDevice device, String action, long timestampMillis) {
         this.device = device;
         this.action = action;
-        this.timestamp = LocalDateTime.now();
+        this.timestampMillis = timestampMillis;
+    }
+
+// Getters
+    public MyDevice getDevice() { return device; }
+    public String getAction() { return action; }
+    public long getTimestampMillis() { return timestampMillis; }
+
+    public LocalDateTime getTimestamp() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneId.systemDefault());
     }
 
 // Format log entry as a string
     public String formatEntry() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return "[" + timestamp.format(formatter) + "] USB " + action + " - " + device.toString();
+        return "[" + getTimestamp().format(TIMESTAMP_FORMAT) + "] USB " + action + " - " + device.toString();
+    }
+
+// Parse a line produced by formatEntry(), null if it is not a device event
+    public static LogEntry parse(String line) {
+        if (line.length() < 22 || line.charAt(0) != '[' || line.charAt(20) != ']') return null;
+        if (!line.startsWith("] USB ", 20)) return null;
+
+        int actionEnd = line.indexOf(" - Device: ", 26);
+        if (actionEnd < 0) return null;
+        String[] labels = { " - Device: ", ", Manufacturer: ", ", ID: ", ", Type: ", ", Serial: ", ", Capacity: " };
+        String[] values = new String[labels.length];
+        int pos = actionEnd;
+        for (int i = 0; i < labels.length; i++) {
+            int start = pos + labels[i].length();
+            int end = i + 1 < labels.length ? line.indexOf(labels[i + 1], start) : line.length();
+            if (end < 0) return null;
+            values[i] = line.substring(start, end);
+            pos = end;
+        }
+
+        LocalDateTime timestamp = parseTimestamp(line);
+        if (timestamp == null) return null;
+        MyDevice device = new MyDevice(values[0], values[1], values[2], values[3],
+                "N/A".equals(values[4]) ? null : values[4],
+                "N/A".equals(values[5]) ? null : values[5]);
+        return new LogEntry(device, line.substring(26, actionEnd), timestamp);
+    }
+
+    // "[yyyy-MM-dd HH:mm:ss" at the start of the line, read digit by digit; much cheaper than
+    // DateTimeFormatter when indexing large logs. Null if malformed.
+    private static LocalDateTime parseTimestamp(String line) {
+        int year = digits(line, 1, 4), month = digits(line, 6, 2), day = digits(line, 9, 2);
+        int hour = digits(line, 12, 2), minute = digits(line, 15, 2), second = digits(line, 18, 2);
+        if ((year | month | day | hour | minute | second) < 0) return null;
+        if (line.charAt(5) != '-' || line.charAt(8) != '-' || line.charAt(11) != ' '
+                || line.charAt(14) != ':' || line.charAt(17) != ':') return null;
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static int digits(String s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
     }
 }
 
-// Simple logger to append log entries to a file
-class Logger {
-    private String logFilePath;
+// Asynchronous logger: callers enqueue, one writer thread appends batches to the file
+class Logger implements AutoCloseable {
+    // What a finished batch must reach before the writer moves on
+    enum Durability {
+        NONE,   // stays in the writer's buffer until it fills or the logger goes idle
+        FLUSH,  // written to the OS after every batch
+        FSYNC   // written and forced to disk after every batch
+    }
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 50;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long RETRY_DELAY_MS = 100;
+    private static final long MAX_RETRY_DELAY_MS = 5000;
+
+    private final String logFilePath;
+    private final ArrayBlockingQueue<LogEntry> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final Durability durability;
+    private final Thread writerThread;
+    private final AtomicLong droppedEntries = new AtomicLong();
+    private volatile EventJournal journal;
+    private volatile LogRotator rotator;
+    private volatile boolean closed = false;
+
+    // Writer thread only: entries encoded into the buffer but not yet written to the file, and the drop counts
+    // already written and waiting in the buffer, so a failed write can put them back
+    private final List<LogEntry> unwritten = new ArrayList<>();
+    private long reportedDrops, bufferedDrops;
 
     public Logger(String logFilePath) {
+        this(logFilePath, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MS, Durability.FLUSH);
+    }
+
+    public Logger(String logFilePath, int queueCapacity, int batchSize, long flushIntervalMillis, Durability durability) {
         this.logFilePath = logFilePath;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.durability = durability;
+        this.writerThread = new Thread(this::runWriter, "USB-Log-Writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        MonitorMetrics.registerGauge("logger.queue.depth", queue::size);
+        MonitorMetrics.registerGauge("logger.dropped", droppedEntries::get);
     }
 
+    // Never blocks; entries are dropped and counted if the queue is full
     public void log(LogEntry entry) {
-        try (FileWriter writer = new FileWriter(logFilePath, true)) {
-            writer.write(entry.formatEntry() + System.lineSeparator());
-        } catch (IOException e) {
-            System.err.println("Error writing to log file: " + e.getMessage());
+        if (closed || !queue.offer(entry)) {
+            droppedEntries.incrementAndGet();
         }
     }
-}
 
-// USB scanning using WMI
-class WmiUsbScanner {
-    public static List<USBMonitor.DeviceInfo> getConnectedDevices() {
-        List<USBMonitor.DeviceInfo> devices = new ArrayList<>();
+    // Also append every entry to a binary journal; the logger closes it on close()
+    public void setJournal(EventJournal journal) {
+        this.journal = journal;
+    }
+
+    // Rotate the log file by size/day; the logger closes the rotator on close()
+    public void setRotator(LogRotator rotator) {
+        this.rotator = rotator;
+    }
+
+    public String getLogFilePath() { return logFilePath; }
+    public int getQueueDepth() { return queue.size(); }
+    public long getDroppedCount() { return droppedEntries.get(); }
+
+    // Stop accepting entries, write everything queued and close the file
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
         try {
-            Process process = Runtime.getRuntime().exec(
-                "wmic diskdrive where \"InterfaceType='USB'\" get DeviceID,Model,SerialNumber,Size /format:list"
-            );
-            Scanner scanner = new Scanner(process.getInputStream());
-            String deviceId = null, model = null, serial = null, size = null;
-
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.isEmpty()) continue;
-
-                if (line.startsWith("DeviceID=")) {
-                    deviceId = line.substring(9);
-                } else if (line.startsWith("Model=")) {
-                    model = line.substring(6);
-                } else if (line.startsWith("SerialNumber=")) {
-                    serial = line.substring(13);
-                } else if (line.startsWith("Size=")) {
-                    long bytes = 0;
-                    try { 
-                        bytes = Long.parseLong(line.substring(5).trim()); 
-                    } catch (Exception ignored) {}
-                    
-                    if (bytes > 0) {
-                        long gb = bytes / (1024 * 1024 * 1024);
-                        size = gb + " GB";
-                    } else {
-                        size = "Unknown";
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LogRotator r = rotator;
+        if (r != null) r.close();
+        EventJournal j = journal;
+        if (j != null) {
+            try {
+                j.close();
+            } catch (IOException e) {
+                System.err.println("Error closing event journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runWriter() {
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        LogEncoder encoder = new LogEncoder();
+        int failures = 0;
+
+        FileChannel channel = null;
+        try {
+            while (true) {
+                if (batch.isEmpty()) {
+                    LogEntry first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        // Idle: push out anything NONE left buffered
+                        if (channel != null) {
+                            try {
+                                flushBuffer(channel, buffer);
+                            } catch (IOException e) {
+                                channel = writeFailed(channel, buffer, e, failures++);
+                                requeueUnwritten(batch, 0);
+                            }
+                        }
+                        if (closed && queue.isEmpty() && batch.isEmpty()) break;
+                        continue;
                     }
 
-                    // Once we have all data, add device
-                    if (deviceId != null && model != null) {
-                        devices.add(new USBMonitor.DeviceInfo(
-                            "WMI_" + (serial != null ? serial : model.hashCode()), // Unique ID
-                            model,           // Name
-                            "Unknown",       // Manufacturer
-                            serial,          // Serial number
-                            "Mass Storage",  // Type
-                            size             // Capacity
-                        ));
+                    // Group commit: gather until the batch is full or the flush interval ends
+                    batch.add(first);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                    while (batch.size() < batchSize) {
+                        queue.drainTo(batch, batchSize - batch.size());
+                        long remaining = deadline - System.nanoTime();
+                        if (batch.size() >= batchSize || remaining <= 0 || closed) break;
+                        LogEntry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                        batch.add(next);
                     }
+                }
 
-                    deviceId = model = serial = size = null; // reset for next
+                // Entries of the batch already in the buffer or the file
+                int encoded = 0;
+                try {
+                    if (channel == null) channel = openLogFile();
+                    channel = rotateIfNeeded(channel, buffer);
+
+                    long drops = droppedEntries.get();
+                    if (drops != bufferedDrops) {
+                        append(channel, buffer, "Logger dropped " + (drops - bufferedDrops) + " entries (queue full)");
+                        bufferedDrops = drops;
+                    }
+                    long writeStart = System.nanoTime();
+                    for (LogEntry entry : batch) {
+                        if (encoder.encode(entry, buffer)) {
+                            unwritten.add(entry);
+                        } else {
+                            flushBuffer(channel, buffer);
+                            if (encoder.encode(entry, buffer) || append(channel, buffer, entry.formatEntry())) {
+                                unwritten.add(entry);
+                            } else {
+                                // Too long for the buffer, written straight to the file
+                                appendToJournal(Collections.singletonList(entry));
+                            }
+                        }
+                        encoded++;
+                    }
+                    if (durability != Durability.NONE) flushBuffer(channel, buffer);
+                    if (durability == Durability.FSYNC) {
+                        channel.force(false);
+                        flushJournal();
+                    }
+                    MonitorMetrics.recordLogWrite(System.nanoTime() - writeStart, batch.size());
+                    batch.clear();
+                    if (failures > 0) System.err.println("Log file writable again after " + failures + " failed attempts");
+                    failures = 0;
+                } catch (IOException e) {
+                    channel = writeFailed(channel, buffer, e, failures++);
+                    requeueUnwritten(batch, encoded);
+                    if (closed) {
+                        // Shutting down: nothing left to wait for
+                        droppedEntries.addAndGet(batch.size() + queue.size());
+                        break;
+                    }
+                    Thread.sleep(Math.min(MAX_RETRY_DELAY_MS, RETRY_DELAY_MS << Math.min(failures, 10)));
                 }
             }
-            scanner.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    // Rotate before writing if the rotator asks for it; a failed rotation keeps writing to the current file
+    private FileChannel rotateIfNeeded(FileChannel channel, ByteBuffer buffer) throws IOException {
+        LogRotator r = rotator;
+        if (r == null || !r.shouldRotate(channel.size() + buffer.position())) return channel;
+        flushBuffer(channel, buffer);
+        channel.close();
+        try {
+            r.rotate();
+        } catch (IOException e) {
+            System.err.println("Error rotating log file, will retry later: " + e.getMessage());
+        }
+        return openLogFile();
+    }
+
+    // Write the buffer to the file; only then do its entries count as logged and go to the journal
+    private void flushBuffer(FileChannel channel, ByteBuffer buffer) throws IOException {
+        writeBuffer(channel, buffer);
+        reportedDrops = bufferedDrops;
+        appendToJournal(unwritten);
+        unwritten.clear();
+    }
+
+    // Drop the channel and the buffer; the caller reopens and writes the unwritten entries again
+    private FileChannel writeFailed(FileChannel channel, ByteBuffer buffer, IOException e, int failures) {
+        // Report the first failure of a run, not every retry
+        if (failures == 0) System.err.println("Error writing to log file, retrying: " + e.getMessage());
+        MonitorMetrics.increment("logger.write.failures");
+        buffer.clear();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+        }
+        return null;
+    }
+
+    // After a failed write: entries that were only in the buffer go back in front of the part of the batch
+    // not yet encoded, and the drop notice is reported again
+    private void requeueUnwritten(List<LogEntry> batch, int encoded) {
+        batch.subList(0, encoded).clear();
+        batch.addAll(0, unwritten);
+        unwritten.clear();
+        bufferedDrops = reportedDrops;
+    }
+
+    private FileChannel openLogFile() throws IOException {
+        return FileChannel.open(Paths.get(logFilePath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void appendToJournal(List<LogEntry> entries) {
+        EventJournal j = journal;
+        if (j == null || entries.isEmpty()) return;
+        try {
+            for (LogEntry entry : entries) {
+                j.append(entry);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing to event journal: " + e.getMessage());
+        }
+    }
+
+    private void flushJournal() {
+        EventJournal j = journal;
+        if (j == null) return;
+        try {
+            j.flush(true);
+        } catch (IOException e) {
+            System.err.println("Error writing to event journal: " + e.getMessage());
+        }
+    }
+
+    // Buffer a line, or write it straight to the file if it is larger than the buffer; true if buffered
+    private boolean append(FileChannel channel, ByteBuffer buffer, String line) throws IOException {
+        byte[] bytes = (line + System.lineSeparator()).getBytes(LogEntry.CHARSET);
+        if (bytes.length > buffer.remaining()) flushBuffer(channel, buffer);
+        if (bytes.length > buffer.capacity()) {
+            ByteBuffer large = ByteBuffer.wrap(bytes);
+            while (large.hasRemaining()) channel.write(large);
+            return false;
+        }
+        buffer.put(bytes);
+        return true;
+    }
+
+    private static void writeBuffer(FileChannel channel, ByteBuffer buffer) throws IOException {
+        if (buffer.position() == 0) return;
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+}
+
+// USB scanning using WMI
+class WmiUsbScanner implements DeviceSource {
+    private static final String WMIC_COMMAND =
+        "wmic diskdrive where \"InterfaceType='USB'\" get DeviceID,Model,SerialNumber,Size /format:list";
+
+    private volatile Process currentProcess;
+    private volatile boolean aborted;
+
+    @Override
+    public String getName() { return "WMI"; }
+
+    @Override
+    public List<USBMonitor.DeviceInfo> scan() {
+        aborted = false;
+        try {
+            Process process = Runtime.getRuntime().exec(WMIC_COMMAND);
+            currentProcess = process;
+            List<USBMonitor.DeviceInfo> devices = parse(new Scanner(process.getInputStream()));
+            // Output cut short by abort() is incomplete and must not replace the last good scan
+            if (aborted) throw new IllegalStateException("wmic was aborted");
+            return devices;
         } catch (IOException e) {
-            System.err.println("WMI scan error: " + e.getMessage());
+            throw new UncheckedIOException("wmic failed", e);
+        } finally {
+            currentProcess = null;
+        }
+    }
+
+    // Kill a hung wmic so the scan thread is released
+    @Override
+    public void abort() {
+        Process process = currentProcess;
+        if (process != null) {
+            aborted = true;
+            process.destroyForcibly();
+        }
+    }
+
+    public static List<USBMonitor.DeviceInfo> getConnectedDevices() {
+        return new WmiUsbScanner().scan();
+    }
+
+    // Parse wmic /format:list output; closes the scanner
+    static List<USBMonitor.DeviceInfo> parse(Scanner scanner) {
+        List<USBMonitor.DeviceInfo> devices = new ArrayList<>();
+        String deviceId = null, model = null, serial = null, size = null;
+
+        while (scanner.hasNextLine()) {
+            String line = scanner.nextLine().trim();
+            if (line.isEmpty()) continue;
+
+            if (line.startsWith("DeviceID=")) {
+                deviceId = line.substring(9);
+            } else if (line.startsWith("Model=")) {
+                model = line.substring(6);
+            } else if (line.startsWith("SerialNumber=")) {
+                serial = line.substring(13);
+            } else if (line.startsWith("Size=")) {
+                long bytes = 0;
+                try { 
+                    bytes = Long.parseLong(line.substring(5).trim()); 
+                } catch (Exception ignored) {}
+                
+                size = bytes > 0 ? USBMonitor.formatCapacity(bytes) : "Unknown";
+
+                // Once we have all data, add device
+                if (deviceId != null && model != null) {
+                    devices.add(USBMonitor.DeviceInfo.of(
+                        "WMI_" + (serial != null ? serial : model.hashCode()), // Unique ID
+                        model,           // Name
+                        "Unknown",       // Manufacturer
+                        serial,          // Serial number
+                        "Mass Storage",  // Type
+                        size             // Capacity
+                    ));
+                }
+
+                deviceId = model = serial = size = null; // reset for next
+            }
         }
+        scanner.close();
         return devices;
     }
 }
 
 // USB scanning using libusb
-class UsbScanner {
+class UsbScanner implements DeviceSource {
+    // USB allows at most 7 tiers of ports below the root hub
+    private static final int MAX_PORT_DEPTH = 7;
+    private static final int[] INTERFACE_CLASS_PRIORITY = { 0x08, 0x03, 0x0E, 0x01 };
+    static final DescriptorCache descriptorCache = new DescriptorCache(256);
+    static final DescriptorReader descriptorReader = new DescriptorReader(descriptorCache);
+    // What the last scan reported for each present device, kept while a re-read of that device is running
+    private static final Map<String, USBMonitor.DeviceInfo> lastReported = new ConcurrentHashMap<>();
+
+    static {
+        MonitorMetrics.registerGauge("libusb.descriptorCache.hits", descriptorCache::getHits);
+        MonitorMetrics.registerGauge("libusb.descriptorCache.misses", descriptorCache::getMisses);
+        descriptorReader.setLateReadListener(USBMonitor::rescanSoon);
+    }
+
+    @Override
+    public String getName() { return "libusb"; }
+
+    @Override
+    public List<USBMonitor.DeviceInfo> scan() { return getConnectedDevices(); }
+
     public static List<USBMonitor.DeviceInfo> getConnectedDevices() {
         List<USBMonitor.DeviceInfo> devices = new ArrayList<>();
         if (USBMonitor.context == null) return devices;
 
+        DeviceList list = new DeviceList();
+        int cnt = LibUsb.getDeviceList(USBMonitor.context, list);
+        // Thrown rather than returning no devices, so the scanner keeps the last good result
+        if (cnt < 0) throw new IllegalStateException("libusb device list failed: " + LibUsb.strError(cnt));
+
+        List<String> presentKeys = new ArrayList<>(cnt);
+        // Scratch space for building keys and IDs, reused for every device of this scan
+        ByteBuffer ports = ByteBuffer.allocateDirect(MAX_PORT_DEPTH);
+        StringBuilder scratch = new StringBuilder(32);
+        // Cached and quarantined devices are answered straight away, the rest are read in parallel
+        USBMonitor.DeviceInfo[] slots = new USBMonitor.DeviceInfo[cnt];
+        String[] keys = new String[cnt];
+        DeviceDescriptor[] pendingDescs = new DeviceDescriptor[cnt];
+        DescriptorReader.Read[] pending = new DescriptorReader.Read[cnt];
         try {
-            DeviceList list = new DeviceList();
-            int cnt = LibUsb.getDeviceList(USBMonitor.context, list);
-            if (cnt >= 0) {
-                try {
-                    for (Device usbDevice : list) {
-                        DeviceDescriptor desc = new DeviceDescriptor();
-                        if (LibUsb.getDeviceDescriptor(usbDevice, desc) != LibUsb.SUCCESS) continue;
-
-                        String manufacturer = getStringDescriptor(usbDevice, desc.iManufacturer());
-                        String product = getStringDescriptor(usbDevice, desc.iProduct());
-                        String deviceType = determineDeviceType(desc);
-                        String deviceId = String.format("%04X:%04X", desc.idVendor() & 0xFFFF, desc.idProduct() & 0xFFFF);
-                        String serialNumber = getStringDescriptor(usbDevice, desc.iSerialNumber());
-
-                        String displayName = product != null && !product.equals("Unknown") ? product : "USB Device";
-                        String displayManufacturer = manufacturer != null && !manufacturer.equals("Unknown") ? manufacturer : "Unknown Manufacturer";
-                        
-                        devices.add(new USBMonitor.DeviceInfo(
-                            deviceId,
-                            displayName,
-                            displayManufacturer,
-                            serialNumber,
-                            deviceType,
-                            null // No capacity from libusb
-                        ));
+            int i = 0;
+            for (Device usbDevice : list) {
+                DeviceDescriptor desc = new DeviceDescriptor();
+                if (LibUsb.getDeviceDescriptor(usbDevice, desc) == LibUsb.SUCCESS) {
+                    String key = identityKey(usbDevice, desc, ports, scratch);
+                    keys[i] = key;
+                    presentKeys.add(key);
+                    DescriptorCache.Entry strings = descriptorCache.get(key);
+                    if (strings != null) {
+                        slots[i] = toDeviceInfo(desc, strings, scratch);
+                    } else if (descriptorReader.isQuarantined(key)) {
+                        slots[i] = toDeviceInfo(desc, partialEntry(desc), scratch);
+                    } else {
+                        pendingDescs[i] = desc;
+                        pending[i] = startRead(usbDevice, desc, key);
                     }
-                } finally {
-                    LibUsb.freeDeviceList(list, true);
                 }
+                i++;
+            }
+            descriptorCache.retainOnly(presentKeys);
+            lastReported.keySet().retainAll(presentKeys);
+        } finally {
+            // Reads still running hold their own reference to the device
+            LibUsb.freeDeviceList(list, true);
+        }
+
+        // One deadline for the whole scan, so slow devices cost one timeout in total, not one each.
+        // A new device still being read is left out rather than reported with placeholder strings that would
+        // turn into a "changed" event; the late read triggers a rescan that reports it properly. A device
+        // being read again keeps what the last scan reported.
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DescriptorReader.READ_TIMEOUT_MS);
+        for (int i = 0; i < cnt; i++) {
+            if (pending[i] != null) {
+                DescriptorCache.Entry strings = descriptorReader.await(pending[i], deadline);
+                if (strings != null) {
+                    slots[i] = toDeviceInfo(pendingDescs[i], strings, scratch);
+                } else if (pending[i].isDone()) {
+                    slots[i] = toDeviceInfo(pendingDescs[i], partialEntry(pendingDescs[i]), scratch);
+                } else {
+                    slots[i] = lastReported.get(keys[i]);
+                    if (slots[i] == null) MonitorMetrics.increment("libusb.reads.deferred");
+                }
+            }
+            if (slots[i] != null) {
+                devices.add(slots[i]);
+                lastReported.put(keys[i], slots[i]);
             }
-        } catch (Exception e) {
-            System.err.println("Error getting libusb devices: " + e.getMessage());
         }
         return devices;
     }
 
-    // Helper to get string descriptor
-    private static String getStringDescriptor(Device device, byte index) {
-        if (index == 0) return "Unknown";
+    // Read on the descriptor reader, keeping the device referenced until the read is done
+    private static DescriptorReader.Read startRead(Device usbDevice, DeviceDescriptor desc, String key) {
+        LibUsb.refDevice(usbDevice);
+        return descriptorReader.start(key, () -> readDescriptors(usbDevice, desc), () -> LibUsb.unrefDevice(usbDevice));
+    }
+
+    // What is known without talking to the device, for one that is quarantined or whose read failed; never cached
+    private static DescriptorCache.Entry partialEntry(DeviceDescriptor desc) {
+        return new DescriptorCache.Entry("Unknown", "USB Device (not responding)", null,
+                determineDeviceType(desc.bDeviceClass() & 0xFF));
+    }
+
+    private static USBMonitor.DeviceInfo toDeviceInfo(DeviceDescriptor desc, DescriptorCache.Entry strings, StringBuilder scratch) {
+        String manufacturer = strings.manufacturer;
+        String product = strings.product;
+        String deviceType = strings.deviceType;
+        String deviceId = formatDeviceId(desc, scratch);
+        String serialNumber = strings.serialNumber;
+
+        String displayName = product != null && !product.equals("Unknown") ? product : "USB Device";
+        String displayManufacturer = manufacturer != null && !manufacturer.equals("Unknown") ? manufacturer : "Unknown Manufacturer";
+
+        return USBMonitor.DeviceInfo.of(
+            deviceId,
+            displayName,
+            displayManufacturer,
+            serialNumber,
+            deviceType,
+            null // No capacity from libusb
+        );
+    }
+
+    // VID:PID identifier used as the device key
+    static String formatDeviceId(DeviceDescriptor desc) {
+        return formatDeviceId(desc, new StringBuilder(9));
+    }
+
+    // Same, built in a scan's scratch builder
+    private static String formatDeviceId(DeviceDescriptor desc, StringBuilder scratch) {
+        scratch.setLength(0);
+        DescriptorCache.appendHex4(scratch, desc.idVendor() & 0xFFFF).append(':');
+        DescriptorCache.appendHex4(scratch, desc.idProduct() & 0xFFFF);
+        return scratch.toString();
+    }
+
+    // Cache key for a device: bus, port path, VID:PID and bcdDevice; ports and scratch are reused across a scan
+    private static String identityKey(Device usbDevice, DeviceDescriptor desc, ByteBuffer ports, StringBuilder scratch) {
+        ports.clear();
+        int portCount = Math.max(0, LibUsb.getPortNumbers(usbDevice, ports));
+        return DescriptorCache.identityKey(scratch, LibUsb.getBusNumber(usbDevice), ports, portCount,
+                desc.idVendor() & 0xFFFF, desc.idProduct() & 0xFFFF, desc.bcdDevice() & 0xFFFF);
+    }
+
+    // Forget cached strings of a device that was unplugged
+    static void invalidate(Device usbDevice, DeviceDescriptor desc) {
+        String key = identityKey(usbDevice, desc, ByteBuffer.allocateDirect(MAX_PORT_DEPTH), new StringBuilder(32));
+        descriptorCache.invalidate(key);
+        lastReported.remove(key);
+    }
+
+    // Read the device type, then manufacturer, product and serial with a single open/close
+    private static DescriptorCache.Entry readDescriptors(Device device, DeviceDescriptor desc) {
+        String deviceType = determineDeviceType(desc.bDeviceClass() & 0xFF, readInterfaceClasses(device, desc));
+        if (desc.iManufacturer() == 0 && desc.iProduct() == 0 && desc.iSerialNumber() == 0) {
+            return new DescriptorCache.Entry("Unknown", "Unknown", "Unknown", deviceType);
+        }
 
         DeviceHandle handle = new DeviceHandle();
         int openResult = LibUsb.open(device, handle);
         if (openResult != LibUsb.SUCCESS) {
-            return "Unknown";
+            MonitorMetrics.increment("libusb.open.failures");
+            // Often only until udev has fixed permissions: cached briefly, then read again
+            return new DescriptorCache.Entry("Unknown", "Unknown", "Unknown", deviceType, false);
         }
 
+        try {
+            return new DescriptorCache.Entry(
+                getStringDescriptor(handle, desc.iManufacturer()),
+                getStringDescriptor(handle, desc.iProduct()),
+                getStringDescriptor(handle, desc.iSerialNumber()),
+                deviceType);
+        } finally {
+            LibUsb.close(handle);
+        }
+    }
+
+    // Interface classes of the active configuration, only needed when the device class defers to them.
+    // Reads the cached configuration descriptor; the device does not have to be opened.
+    private static int[] readInterfaceClasses(Device device, DeviceDescriptor desc) {
+        if (!definedPerInterface(desc.bDeviceClass() & 0xFF)) return new int[0];
+        ConfigDescriptor config = new ConfigDescriptor();
+        if (LibUsb.getActiveConfigDescriptor(device, config) != LibUsb.SUCCESS
+                && LibUsb.getConfigDescriptor(device, (byte) 0, config) != LibUsb.SUCCESS) {
+            return new int[0];
+        }
+        try {
+            Interface[] interfaces = config.iface();
+            int[] classes = new int[interfaces.length];
+            int count = 0;
+            for (Interface iface : interfaces) {
+                InterfaceDescriptor[] settings = iface.altsetting();
+                if (settings.length > 0) classes[count++] = settings[0].bInterfaceClass() & 0xFF;
+            }
+            return Arrays.copyOf(classes, count);
+        } finally {
+            LibUsb.freeConfigDescriptor(config);
+        }
+    }
+
+    // Helper to get string descriptor from an open device
+    private static String getStringDescriptor(DeviceHandle handle, byte index) {
+        if (index == 0) return "Unknown";
+
         try {
             StringBuffer buffer = new StringBuffer(256);
             int ret = LibUsb.getStringDescriptorAscii(handle, index, buffer);
@@ -202,16 +764,14 @@ class UsbScanner {
             return buffer.toString();
         } catch (Exception e) {
             return "Unknown";
-        } finally {
-            LibUsb.close(handle);
         }
     }
 
 // Heuristic to determine device type from class code
-    private static String determineDeviceType(DeviceDescriptor desc) {
-        int deviceClass = desc.bDeviceClass() & 0xFF;
+    static String determineDeviceType(int deviceClass) {
         switch (deviceClass) {
             case 0x00: return "Composite Device";
+            case 0x01: return "Audio Device";
             case 0x03: return "Human Interface Device (HID)";
             case 0x08: return "Mass Storage";
             case 0x09: return "USB Hub";
@@ -221,112 +781,249 @@ class UsbScanner {
             default: return "USB Device";
         }
     }
+
+    // Composite devices (class 0x00, or 0xEF with interface associations) are typed by their most
+    // significant interface: storage, then HID, video and audio, else the first interface
+    static String determineDeviceType(int deviceClass, int[] interfaceClasses) {
+        if (!definedPerInterface(deviceClass) || interfaceClasses.length == 0) return determineDeviceType(deviceClass);
+        for (int preferred : INTERFACE_CLASS_PRIORITY) {
+            for (int interfaceClass : interfaceClasses) {
+                if (interfaceClass == preferred) return determineDeviceType(interfaceClass);
+            }
+        }
+        return determineDeviceType(interfaceClasses[0]);
+    }
+
+    static boolean definedPerInterface(int deviceClass) {
+        return deviceClass == 0x00 || deviceClass == 0xEF;
+    }
 }
 
 // Main USB monitoring class
 class USBMonitor {
     static Context context;
     private static final List<USBEventListener> listeners = new CopyOnWriteArrayList<>();
+    private static final List<AutoCloseable> shutdownResources = new CopyOnWriteArrayList<>();
     private static volatile boolean libusbInitialized = false;
+    private static volatile boolean libusbEnabled = true;
     private static volatile boolean wmiInitialized = true;
-    private static Thread pollThread;
     private static volatile boolean running = false;
-
-    private static Map<String, DeviceInfo> mergedDevices = new ConcurrentHashMap<>();
-    private static Set<String> notifiedDevices = new ConcurrentHashMap().newKeySet();
+    private static final AtomicBoolean rescanQueued = new AtomicBoolean();
+    // Idle polls never wait longer than the old fixed 3 s; a longer back-off is opt-in via setPollIntervals
+    private static volatile long pollMinIntervalMs = 1000;
+    private static volatile long pollMaxIntervalMs = 3000;
+    private static final long SCAN_DEADLINE_MS = 10000;
+    private static final ParallelScanner parallelScanner = new ParallelScanner(SCAN_DEADLINE_MS);
+    private static DeviceEventSource configuredEventSource;
+    private static DeviceEventSource eventSource;
+    // Serializes merges between the polling and hotplug paths
+    private static final Object stateLock = new Object();
+
+    private static volatile List<DeviceSource> deviceSources = defaultDeviceSources();
+
+    private static final DeviceSnapshotStore deviceState = new DeviceSnapshotStore(1024);
+    static final DeviceRegistry deviceRegistry = new DeviceRegistry(4096);
+    // Absorbs cable bounces and flapping devices before listeners see them
+    private static final DeviceDebouncer debouncer = new DeviceDebouncer(stateLock, new DeviceDebouncer.Output() {
+        public void connected(DeviceInfo device) { notifyDeviceConnected(device); }
+        public void disconnected(DeviceInfo device) { notifyDeviceDisconnected(device); }
+        public void changed(DeviceInfo previous, DeviceInfo current) { notifyDeviceChanged(previous, current); }
+        public void flapping(DeviceInfo device, int transitions, long windowMillis) { notifyDeviceFlapping(device, transitions, windowMillis); }
+    });
     
 // Initialize USB monitoring
-    public static synchronized void initialize() {
-        if (libusbInitialized && wmiInitialized) return;
+    public static void initialize() {
+        initialize(null);
+    }
 
-        try {
-            context = new Context();
-            int result = LibUsb.init(context);
-            if (result == LibUsb.SUCCESS) {
-                libusbInitialized = true;
-                System.out.println("Libusb initialized successfully");
-            } else {
-                System.err.println("Unable to initialize libusb: " + LibUsb.strError(result));
+// Initialize USB monitoring and hand the devices already present to initialDevices (may be null) before any
+// event can reach listeners; listeners added before this call then see each later change exactly once
+    public static synchronized void initialize(Consumer<DeviceSnapshot> initialDevices) {
+        if (libusbInitialized && wmiInitialized) {
+            if (initialDevices != null) {
+                synchronized (stateLock) {
+                    initialDevices.accept(deviceState.current());
+                }
+            }
+            return;
+        }
+
+        if (libusbEnabled) {
+            try {
+                context = new Context();
+                int result = LibUsb.init(context);
+                if (result == LibUsb.SUCCESS) {
+                    libusbInitialized = true;
+                    System.out.println("Libusb initialized successfully");
+                } else {
+                    System.err.println("Unable to initialize libusb: " + LibUsb.strError(result));
+                    context = null;
+                }
+            } catch (Exception | LinkageError e) {
+                // Missing usb4java jar or native library: carry on with the other backends
+                System.err.println("Libusb initialization failed: " + e.getMessage());
+                context = null;
             }
-        } catch (Exception e) {
-            System.err.println("Libusb initialization failed: " + e.getMessage());
         }
 
         wmiInitialized = true;
         running = true;
 
-        pollThread = new Thread(() -> {
-            System.out.println("USB Monitor: Starting device polling thread");
+        MonitorMetrics.registerJmx();
+        MonitorMetrics.registerGauge("registry.devices", deviceRegistry::size);
+        MonitorMetrics.registerGauge("registry.hits", deviceRegistry::getHits);
+        synchronized (stateLock) {
+            deviceState.publish(scanAndMergeDevices());
+            if (initialDevices != null) initialDevices.accept(deviceState.current());
+        }
+        startEventSource();
+        System.out.println("USB Monitor initialized successfully");
+    }
 
-            scanAndMergeDevices();
+// WMI + libusb on Windows, sysfs on Linux, libusb elsewhere
+    static List<DeviceSource> defaultDeviceSources() {
+        List<DeviceSource> sources = new ArrayList<>();
+        String os = System.getProperty("os.name", "").toLowerCase();
+        if (os.contains("win")) {
+            sources.add(new WmiUsbScanner());
+            sources.add(new UsbScanner());
+        } else if (SysfsDeviceSource.isSupported()) {
+            sources.add(new SysfsDeviceSource());
+        } else {
+            sources.add(new UsbScanner());
+        }
+        return sources;
+    }
 
-            Map<String, DeviceInfo> previousDevices = new HashMap<>(mergedDevices);
+// Replace the scan backends; later sources win when device IDs collide
+    public static void setDeviceSources(List<DeviceSource> sources) {
+        deviceSources = new ArrayList<>(sources);
+    }
 
-            while (running) {
-                try {
-                    Thread.sleep(3000);
+// Names of the active scan backends
+    public static List<String> getDeviceSourceNames() {
+        List<String> names = new ArrayList<>();
+        for (DeviceSource source : deviceSources) {
+            names.add(source.getName());
+        }
+        return names;
+    }
 
-                    scanAndMergeDevices();
+// Use a configured source, else libusb hotplug, else fall back to polling
+    private static void startEventSource() {
+        DeviceEventSource source = configuredEventSource;
+        if (source == null && libusbInitialized) {
+            source = new LibUsbHotplugSource(context);
+        }
+        if (source == null || !source.start(eventSink)) {
+            source = new PollingEventSource(pollMinIntervalMs, pollMaxIntervalMs);
+            source.start(eventSink);
+        }
+        eventSource = source;
+        System.out.println("USB Monitor: Using " + source.getName() + " for device events");
+    }
 
-                    for (String deviceId : mergedDevices.keySet()) {
-                        if (!previousDevices.containsKey(deviceId) && !notifiedDevices.contains(deviceId)) {
-                            DeviceInfo deviceInfo = mergedDevices.get(deviceId);
-                            if (deviceInfo != null) {
-                                notifyDeviceConnected(deviceInfo);
-                                notifiedDevices.add(deviceId);
-                            }
-                        }
-                    }
+// Skip loading libusb entirely (faster startup where sysfs or WMI is enough)
+    public static synchronized void setLibusbEnabled(boolean enabled) {
+        libusbEnabled = enabled;
+    }
 
-                    for (String deviceId : previousDevices.keySet()) {
-                        if (!mergedDevices.containsKey(deviceId)) {
-                            DeviceInfo removedDevice = previousDevices.get(deviceId);
-                            notifyDeviceDisconnected(removedDevice);
-                            notifiedDevices.remove(deviceId);
-                        }
-                    }
+// Bounds of the adaptive poll interval used when hotplug is unavailable; takes effect on the next initialize().
+// The maximum is the worst-case delay before a device plugged into an idle machine shows up.
+    public static synchronized void setPollIntervals(long minMillis, long maxMillis) {
+        pollMinIntervalMs = minMillis;
+        pollMaxIntervalMs = maxMillis;
+    }
+
+// Debounce windows for connects and disconnects, and flap detection: flapTransitions connects/disconnects
+// within flapWindowMillis. Zero windows announce immediately; zero flapTransitions disables flap detection.
+    public static void setDebounce(long connectMillis, long disconnectMillis, int flapTransitions, long flapWindowMillis) {
+        debouncer.configure(connectMillis, disconnectMillis, flapTransitions, flapWindowMillis);
+    }
 
-                    previousDevices = new HashMap<>(mergedDevices);
+// Replace the event source used by the next initialize(), e.g. to inject simulated events
+    public static synchronized void setEventSource(DeviceEventSource source) {
+        configuredEventSource = source;
+    }
 
-                } catch (InterruptedException e) {
-                    break;
-                } catch (Exception e) {
-                    System.err.println("Error in USB polling: " + e.getMessage());
-                }
+// Applies events from the active source to the merged device state
+    private static final DeviceEventSink eventSink = new DeviceEventSink() {
+        @Override
+        public void deviceLeft(String deviceId) {
+            synchronized (stateLock) {
+                DeviceChange change = deviceState.remove(deviceId);
+                if (change != null) dispatchChanges(Collections.singletonList(change));
             }
-            System.out.println("USB Monitor: Polling thread stopped");
-        }, "USB-Polling-Thread");
+        }
 
-        pollThread.setDaemon(true);
-        pollThread.start();
-        System.out.println("USB Monitor initialized successfully");
+        @Override
+        public boolean rescanRequested() {
+            synchronized (stateLock) {
+                List<DeviceChange> changes = deviceState.publish(scanAndMergeDevices());
+                dispatchChanges(changes);
+                return !changes.isEmpty();
+            }
+        }
+    };
+
+// Rescan on a separate thread, e.g. once a device left out of a scan has answered; requests made while one
+// is queued share it
+    static void rescanSoon() {
+        if (!running || !rescanQueued.compareAndSet(false, true)) return;
+        Thread thread = new Thread(() -> {
+            rescanQueued.set(false);
+            try {
+                eventSink.rescanRequested();
+            } catch (Exception e) {
+                System.err.println("Error in USB rescan: " + e.getMessage());
+            }
+        }, "USB-Rescan-Thread");
+        thread.setDaemon(true);
+        thread.start();
     }
 
-// Merge devices from libusb and WMI
-private static void scanAndMergeDevices() {
-    Map<String, DeviceInfo> newMergedDevices = new HashMap<>();
-
-    List<DeviceInfo> libusbDevices = UsbScanner.getConnectedDevices();
-    List<DeviceInfo> wmiDevices = WmiUsbScanner.getConnectedDevices();
+// Turn snapshot changes into listener notifications, through the debouncer; caller holds stateLock
+    private static void dispatchChanges(List<DeviceChange> changes) {
+        for (DeviceChange change : changes) {
+            MonitorMetrics.recordEvent(change.getKind());
+            debouncer.submit(change);
+        }
+    }
 
-   //System.out.println("Libusb found: " + libusbDevices.size() + " devices");
-  //  System.out.println("WMI found: " + wmiDevices.size() + " devices");
+// Scan all configured sources in parallel and merge them into a new map
+private static Map<String, DeviceInfo> scanAndMergeDevices() {
+    long scanStart = System.nanoTime();
+    Map<String, DeviceInfo> merged = mergeResults(parallelScanner.scan(deviceSources));
+    MonitorMetrics.recordMergedScan(System.nanoTime() - scanStart, merged.size());
+    return merged;
+}
 
-//adding WMI devices first
-for (DeviceInfo wmiDev : wmiDevices) {
-    String baseId = wmiDev.getDeviceId() != null ? wmiDev.getDeviceId() : wmiDev.getProductName();
-    if (baseId == null || baseId.isEmpty()) baseId = "Unknown";
-    newMergedDevices.put("WMI_" + baseId, wmiDev);
+// Scan the given sources one after another on the calling thread and merge them
+static Map<String, DeviceInfo> mergeDevices(List<DeviceSource> sources) {
+    List<List<DeviceInfo>> results = new ArrayList<>(sources.size());
+    for (DeviceSource source : sources) {
+        results.add(source.scan());
+    }
+    return mergeResults(results);
 }
 
+// Later results win when device IDs collide
+static Map<String, DeviceInfo> mergeResults(List<List<DeviceInfo>> results) {
+    Map<String, DeviceInfo> newMergedDevices = new HashMap<>();
 
-//adding libusb devices, merging details if possible
-    for (DeviceInfo libDev : libusbDevices) {
-        newMergedDevices.put(libDev.getDeviceId(), libDev);
+    for (List<DeviceInfo> scanned : results) {
+        for (DeviceInfo dev : scanned) {
+            newMergedDevices.put(dev.getKey(), dev);
+        }
     }
 
-    mergedDevices.clear();
-    mergedDevices.putAll(newMergedDevices);
+    return newMergedDevices;
+}
+
+// Human-readable capacity in whole gigabytes
+static String formatCapacity(long bytes) {
+    long gb = bytes / (1024 * 1024 * 1024);
+    return gb + " GB";
 }
 
 
@@ -353,26 +1050,63 @@ private static String extractVidPid(String deviceId) {
 
 // Notify listeners of device connection
     private static void notifyDeviceConnected(DeviceInfo deviceInfo) {
-        SwingUtilities.invokeLater(() -> {
-            for (USBEventListener listener : listeners) {
+        for (USBEventListener listener : listeners) {
+            long start = System.nanoTime();
+            try {
                 listener.onDeviceConnected(deviceInfo);
+            } catch (Exception e) {
+                System.err.println("Error in USB event listener: " + e.getMessage());
             }
-        });
+            MonitorMetrics.recordListenerDispatch(System.nanoTime() - start);
+        }
     }
 
 // Notify listeners of device disconnection
     private static void notifyDeviceDisconnected(DeviceInfo deviceInfo) {
-        SwingUtilities.invokeLater(() -> {
-            for (USBEventListener listener : listeners) {
+        for (USBEventListener listener : listeners) {
+            long start = System.nanoTime();
+            try {
                 listener.onDeviceDisconnected(deviceInfo);
+            } catch (Exception e) {
+                System.err.println("Error in USB event listener: " + e.getMessage());
             }
-        });
+            MonitorMetrics.recordListenerDispatch(System.nanoTime() - start);
+        }
+    }
+
+// Notify listeners that a known device now reports different details
+    private static void notifyDeviceChanged(DeviceInfo previous, DeviceInfo current) {
+        for (USBEventListener listener : listeners) {
+            long start = System.nanoTime();
+            try {
+                listener.onDeviceChanged(previous, current);
+            } catch (Exception e) {
+                System.err.println("Error in USB event listener: " + e.getMessage());
+            }
+            MonitorMetrics.recordListenerDispatch(System.nanoTime() - start);
+        }
     }
 
-// Event listener interface
+// Notify listeners that a device keeps connecting and disconnecting; its events are held back until it settles
+    private static void notifyDeviceFlapping(DeviceInfo deviceInfo, int transitions, long windowMillis) {
+        for (USBEventListener listener : listeners) {
+            long start = System.nanoTime();
+            try {
+                listener.onDeviceFlapping(deviceInfo, transitions, windowMillis);
+            } catch (Exception e) {
+                System.err.println("Error in USB event listener: " + e.getMessage());
+            }
+            MonitorMetrics.recordListenerDispatch(System.nanoTime() - start);
+        }
+    }
+
+// Event listener interface; callbacks run on the monitor's event or debounce thread (never concurrently), not the EDT
     public interface USBEventListener {
         void onDeviceConnected(DeviceInfo device);
         void onDeviceDisconnected(DeviceInfo device);
+        default void onDeviceChanged(DeviceInfo previous, DeviceInfo current) {}
+        // At least transitions connects/disconnects within windowMillis; one call per flapping episode
+        default void onDeviceFlapping(DeviceInfo device, int transitions, long windowMillis) {}
     }
 
     // Add event listener
@@ -385,23 +1119,81 @@ private static String extractVidPid(String deviceId) {
         listeners.remove(listener);
     }
 
+    // Close a resource (e.g. a Logger) during cleanup(), after monitoring has stopped
+    public static void addShutdownResource(AutoCloseable resource) {
+        shutdownResources.add(resource);
+    }
+
 // Get current merged device list
     public static List<DeviceInfo> getConnectedDevices() {
-        return new ArrayList<>(mergedDevices.values());
+        return new ArrayList<>(deviceState.current().values());
+    }
+
+// Current immutable device snapshot
+    public static DeviceSnapshot getSnapshot() {
+        return deviceState.current();
+    }
+
+// Changes after the given generation, or null if too old and the caller must use getSnapshot()
+    public static List<DeviceChange> getChangesSince(long generation) {
+        return deviceState.changesSince(generation);
     }
 
 // DeviceInfo class to hold device details
     public static class DeviceInfo {
-        private String deviceId, productName, manufacturer, serialNumber, deviceType, storageCapacity;
+        private final String deviceId, productName, manufacturer, serialNumber, deviceType, storageCapacity;
+        // Precomputed: devices are hashed and keyed on every scan
+        private final int hash;
+        private final String key;
+        // Logging view of this device, created once
+        private volatile MyDevice myDevice;
 
         public DeviceInfo(String deviceId, String productName, String manufacturer,
                           String serialNumber, String deviceType, String storageCapacity) {
             this.deviceId = deviceId;
-            this.productName = productName != null ? productName : "Unknown Device";
-            this.manufacturer = manufacturer != null ? manufacturer : "Unknown Manufacturer";
+            this.productName = normalizeProductName(productName);
+            this.manufacturer = normalizeManufacturer(manufacturer);
             this.serialNumber = serialNumber;
             this.deviceType = deviceType;
             this.storageCapacity = storageCapacity;
+            this.hash = hash(this.deviceId, this.productName, this.manufacturer, serialNumber, deviceType, storageCapacity);
+            String k = deviceId != null ? deviceId : this.productName;
+            this.key = k == null || k.isEmpty() ? "Unknown" : k;
+        }
+
+        // Canonical instance from the shared registry; scanners use this instead of the constructor
+        public static DeviceInfo of(String deviceId, String productName, String manufacturer,
+                                    String serialNumber, String deviceType, String storageCapacity) {
+            return deviceRegistry.intern(deviceId, productName, manufacturer, serialNumber, deviceType, storageCapacity);
+        }
+
+        static String normalizeProductName(String productName) {
+            return productName != null ? productName : "Unknown Device";
+        }
+
+        static String normalizeManufacturer(String manufacturer) {
+            return manufacturer != null ? manufacturer : "Unknown Manufacturer";
+        }
+
+        static int hash(String deviceId, String productName, String manufacturer,
+                        String serialNumber, String deviceType, String storageCapacity) {
+            int h = Objects.hashCode(deviceId);
+            h = 31 * h + Objects.hashCode(productName);
+            h = 31 * h + Objects.hashCode(manufacturer);
+            h = 31 * h + Objects.hashCode(serialNumber);
+            h = 31 * h + Objects.hashCode(deviceType);
+            return 31 * h + Objects.hashCode(storageCapacity);
+        }
+
+        // True if this device has exactly these (normalized) fields
+        boolean hasFields(String deviceId, String productName, String manufacturer,
+                          String serialNumber, String deviceType, String storageCapacity) {
+            return Objects.equals(this.deviceId, deviceId)
+                && Objects.equals(this.productName, productName)
+                && Objects.equals(this.manufacturer, manufacturer)
+                && Objects.equals(this.serialNumber, serialNumber)
+                && Objects.equals(this.deviceType, deviceType)
+                && Objects.equals(this.storageCapacity, storageCapacity);
         }
 
 // Getters
@@ -412,29 +1204,27 @@ private static String extractVidPid(String deviceId) {
         public String getDeviceType() { return deviceType; }
         public String getStorageCapacity() { return storageCapacity; }
 
-// Convert to MyDevice for logging
+        // Key used when merging backends: device ID, else product name, else "Unknown"
+        public String getKey() { return key; }
+
+// Convert to MyDevice for logging; the same instance is returned every time
         public MyDevice toMyDevice() {
-            return new MyDevice(productName, manufacturer, deviceId, deviceType, serialNumber, storageCapacity);
+            MyDevice device = myDevice;
+            if (device == null) {
+                device = new MyDevice(productName, manufacturer, deviceId, deviceType, serialNumber, storageCapacity);
+                myDevice = device;
+            }
+            return device;
         }
 
-// Heuristic to determine if device is an input device
+// Whether the configured rules count this device's category as input (keyboards, mice, cameras...)
         public boolean isInputDevice() {
-            String lowerProduct = productName.toLowerCase();
-            String lowerType = deviceType.toLowerCase();
-            
-            if (lowerType.contains("hid") || lowerType.contains("human interface") || lowerType.contains("input")) {
-                return true;
-            }
-            
-            if (lowerProduct.contains("keyboard") || lowerProduct.contains("mouse") ||
-                lowerProduct.contains("controller") || lowerProduct.contains("gamepad") ||
-                lowerProduct.contains("joystick") || lowerProduct.contains("touchpad") ||
-                lowerProduct.contains("webcam") || lowerProduct.contains("camera") ||
-                lowerProduct.contains("microphone")) {
-                return true;
-            }
-            
-            return false;
+            return DeviceClassifier.getDefault().isInputDevice(this);
+        }
+
+// Category from the configured classification rules, null if none matches
+        public String getCategory() {
+            return DeviceClassifier.getDefault().classify(this);
         }
 // Detailed string for logging
         @Override
@@ -450,6 +1240,21 @@ public String toString() {
     return sb.toString();
 }
 
+// Same details in every field
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DeviceInfo)) return false;
+            DeviceInfo other = (DeviceInfo) o;
+            return hash == other.hash
+                && other.hasFields(deviceId, productName, manufacturer, serialNumber, deviceType, storageCapacity);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
 // Formatted string for display in combo box
         public String toDisplayString() {
             return String.format("%s (%s) - %s [%s]",
@@ -475,13 +1280,9 @@ public String toString() {
 // Cleanup resources on exit
     public static void cleanup() {
         running = false;
-        if (pollThread != null && pollThread.isAlive()) {
-            pollThread.interrupt();
-            try {
-                pollThread.join(1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        if (eventSource != null) {
+            eventSource.stop();
+            eventSource = null;
         }
         if (context != null) {
             LibUsb.exit(context);
@@ -489,44 +1290,95 @@ public String toString() {
         }
         libusbInitialized = false;
         wmiInitialized = false;
-        mergedDevices.clear();
-        notifiedDevices.clear();
+        parallelScanner.reset();
+        deviceState.clear();
+        deviceRegistry.clear();
+        debouncer.clear();
+        for (AutoCloseable resource : shutdownResources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                System.err.println("Error closing " + resource + ": " + e.getMessage());
+            }
+        }
+        shutdownResources.clear();
+        MonitorMetrics.stopReporters();
         System.out.println("USB Monitor cleaned up");
     }
 
-// Main method to launch the GUI
+// Main method to launch the GUI; headless use goes through UsbMonitorDaemon
     public static void main(String[] args) {
-        try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        
-        SwingUtilities.invokeLater(() -> {
-            UsbMonitorGUI gui = new UsbMonitorGUI();
-            gui.setLocationRelativeTo(null);
-            gui.setVisible(true);
-        });
+        UsbMonitorGUI.main(args);
     }
 }
 
 // Main GUI class
 public class UsbMonitorGUI extends JFrame {
-    private JTextArea logArea;
+    private static final int LOG_VIEW_LINES = 5000;
+    private static final int LOG_PAGE_LINES = 500;
+    private JList<String> logList;
+    private ActivityLogModel logModel;
+    private JButton loadOlderBtn;
     private Logger logger;
-    private List<LogEntry> logEntries;
+    private EventHistory eventHistory;
+    private HistoryIndex historyIndex;
+    private PolicyEngine policyEngine;
     private JComboBox<String> deviceComboBox;
     private List<USBMonitor.DeviceInfo> currentDevices;
     private JTextField manualDeviceField, manualManufacturerField;
     private boolean autoMonitoring = false;
     private JButton autoMonitorBtn;
     private JCheckBox showOnlyInputDevicesCheckbox;
-    private boolean usbInitialized = false;
+    private volatile boolean usbInitialized = false;
+    private EdtCoalescer<DeviceUiEvent> deviceUiUpdates;
+
+    // One device change waiting for the next coalesced UI update
+    private static class DeviceUiEvent {
+        final USBMonitor.DeviceInfo device;
+        final DeviceChange.Kind kind;
+
+        DeviceUiEvent(USBMonitor.DeviceInfo device, DeviceChange.Kind kind) {
+            this.device = device;
+            this.kind = kind;
+        }
+    }
+// Launch the GUI
+    public static void main(String[] args) {
+        try {
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        
+        SwingUtilities.invokeLater(() -> {
+            UsbMonitorGUI gui = new UsbMonitorGUI();
+            gui.setLocationRelativeTo(null);
+            gui.setVisible(true);
+        });
+    }
 // Constructor to set up the GUI
     public UsbMonitorGUI() {
         logger = new Logger("usb_log.txt");
-        logEntries = new ArrayList<>();
+        // 10 MB or one day per file, keep 30 compressed segments up to 200 MB
+        LogRotator rotator = new LogRotator("usb_log.txt", 10L * 1024 * 1024, true, 30, 200L * 1024 * 1024);
+        logger.setRotator(rotator);
+        try {
+            logger.setJournal(new EventJournal(new File("usb_journal")));
+        } catch (IOException e) {
+            System.err.println("Event journal disabled: " + e.getMessage());
+        }
+        USBMonitor.addShutdownResource(logger);
+        eventHistory = new EventHistory(10000);
+        historyIndex = new HistoryIndex();
+        MonitorMetrics.registerGauge("history.events", historyIndex::size);
+        loadHistory(rotator);
+        policyEngine = new PolicyEngine(new File(PolicyEngine.DEFAULT_FILE));
+        policyEngine.addViolationListener((device, rule) -> addToLogArea(
+                "POLICY " + rule.verdict + ": " + device.toLogString() + " (" + rule + ")"));
+        policyEngine.start();
+        USBMonitor.addShutdownResource(policyEngine);
         currentDevices = new ArrayList<>();
+        deviceUiUpdates = new EdtCoalescer<>(this::applyDeviceUpdates);
 
         setTitle("USB Sentinel: Real-time Device Monitor");
         setSize(900, 700);
@@ -560,24 +1412,37 @@ public class UsbMonitorGUI extends JFrame {
         autoMonitorBtn = new JButton("Start Auto Monitoring");
         JButton detectInputBtn = new JButton("Detect Input Devices");
         JButton testDetectionBtn = new JButton("Test Detection");
+        JButton historyBtn = new JButton("Device History");
 
         JPanel deviceButtonPanel = new JPanel(new FlowLayout());
         deviceButtonPanel.add(refreshBtn);
         deviceButtonPanel.add(autoMonitorBtn);
         deviceButtonPanel.add(detectInputBtn);
         deviceButtonPanel.add(testDetectionBtn);
+        deviceButtonPanel.add(historyBtn);
         devicesPanel.add(deviceButtonPanel, BorderLayout.SOUTH);
 
-        // Log panel
-        logArea = new JTextArea(15, 80);
-        logArea.setEditable(false);
-        logArea.setBackground(new Color(30, 30, 30));
-        logArea.setForeground(Color.WHITE);
-        logArea.setFont(new Font("Consolas", Font.PLAIN, 12));
+        // Log panel: a JList only renders the visible rows of the bounded model
+        logModel = new ActivityLogModel(LOG_VIEW_LINES, new File(logger.getLogFilePath()), rotator);
+        logList = new JList<>(logModel);
+        logList.setBackground(new Color(30, 30, 30));
+        logList.setForeground(Color.WHITE);
+        logList.setFont(new Font("Consolas", Font.PLAIN, 12));
+        logList.setVisibleRowCount(15);
+        // Fixed cell sizes stop the list from measuring every row on each change
+        logList.setFixedCellHeight(logList.getFontMetrics(logList.getFont()).getHeight() + 2);
+        logList.setFixedCellWidth(1600);
+
+        loadOlderBtn = new JButton("Load Older Entries");
+        loadOlderBtn.setEnabled(logModel.canLoadOlder());
+        logModel.setLoadStateListener(() -> loadOlderBtn.setEnabled(logModel.canLoadOlder()));
+        JPanel logHeader = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        logHeader.add(loadOlderBtn);
 
         JPanel logPanel = new JPanel(new BorderLayout(5, 5));
         logPanel.setBorder(BorderFactory.createTitledBorder("Activity Log"));
-        logPanel.add(new JScrollPane(logArea), BorderLayout.CENTER);
+        logPanel.add(logHeader, BorderLayout.NORTH);
+        logPanel.add(new JScrollPane(logList), BorderLayout.CENTER);
 
         // Action buttons
         JPanel actionPanel = new JPanel(new FlowLayout());
@@ -608,10 +1473,12 @@ public class UsbMonitorGUI extends JFrame {
         autoMonitorBtn.addActionListener(e -> toggleAutoMonitoring());
         detectInputBtn.addActionListener(e -> detectInputDevices());
         testDetectionBtn.addActionListener(e -> testUSBDetection());
+        historyBtn.addActionListener(e -> showDeviceHistory());
         showOnlyInputDevicesCheckbox.addActionListener(e -> refreshDeviceList());
         manualInsertBtn.addActionListener(e -> logManualDevice("Inserted"));
         manualRemoveBtn.addActionListener(e -> logManualDevice("Removed"));
-        clearBtn.addActionListener(e -> logArea.setText(""));
+        clearBtn.addActionListener(e -> logModel.clear());
+        loadOlderBtn.addActionListener(e -> loadOlderLogEntries());
         // Initialize USB monitoring
         initializeUSBMonitoring();
         cleanupOnExit();
@@ -624,38 +1491,38 @@ public class UsbMonitorGUI extends JFrame {
     private void initializeUSBMonitoring() {
         new Thread(() -> {
             try {
-                USBMonitor.initialize();
-                usbInitialized = true;
-                
+                USBMonitor.addEventListener(historyIndex);
+                USBMonitor.addEventListener(policyEngine);
                 USBMonitor.addEventListener(new USBMonitor.USBEventListener() {
                     public void onDeviceConnected(USBMonitor.DeviceInfo device) {
-                        SwingUtilities.invokeLater(() -> {
-                            if (autoMonitoring) logAutoEvent(device, "Inserted");
-                            refreshDeviceList();
-                            addToLogArea("Detected: Device connected - " + device.toLogString());
-
-                            if (device.isInputDevice()) {
-                                addToLogArea(" Input device connection: " + device.getProductName());
-                            }
-                        });
+                        deviceUiUpdates.submit(new DeviceUiEvent(device, DeviceChange.Kind.ADDED));
                     }
 // Handle device disconnection
                     public void onDeviceDisconnected(USBMonitor.DeviceInfo device) {
-                        SwingUtilities.invokeLater(() -> {
-                            if (autoMonitoring) logAutoEvent(device, "Removed");
-                            refreshDeviceList();
-                            addToLogArea("Detected: Device disconnected - " + device.toLogString());
-
-                            if (device.isInputDevice()) {
-                                addToLogArea(" Input device detected: " + device.getProductName());
-                            }
-                        });
+                        deviceUiUpdates.submit(new DeviceUiEvent(device, DeviceChange.Kind.REMOVED));
+                    }
+// Handle new details of a known device (e.g. its capacity showed up), so the list shows them
+                    public void onDeviceChanged(USBMonitor.DeviceInfo previous, USBMonitor.DeviceInfo current) {
+                        deviceUiUpdates.submit(new DeviceUiEvent(current, DeviceChange.Kind.CHANGED));
+                    }
+// Handle a flapping device: one line per episode instead of a log line per bounce
+                    public void onDeviceFlapping(USBMonitor.DeviceInfo device, int transitions, long windowMillis) {
+                        if (autoMonitoring) logAutoEvent(device, "Flapping");
+                        addToLogArea("Device flapping: " + device.toLogString() + " (" + transitions + " connects/disconnects within "
+                                + windowMillis / 1000 + " s), holding its events until it settles");
                     }
                 });
+                // Listeners first, so no event is missed; devices already present get their policy check once
+                USBMonitor.initialize(devices -> {
+                    for (USBMonitor.DeviceInfo device : devices.values()) {
+                        policyEngine.check(device);
+                    }
+                });
+                usbInitialized = true;
 
                 SwingUtilities.invokeLater(() -> {
                     addToLogArea("USB Monitoring initialized successfully");
-                    addToLogArea("Using combined detection: Windows Management Instrumentation + Libusb");
+                    addToLogArea("Using detection backends: " + String.join(" + ", USBMonitor.getDeviceSourceNames()));
                 });
 
             } catch (Exception e) {
@@ -675,62 +1542,87 @@ public class UsbMonitorGUI extends JFrame {
             }
         });
     }
+// Apply one frame's worth of device changes: log them, then rebuild the device list once
+    private void applyDeviceUpdates(List<DeviceUiEvent> events) {
+        for (DeviceUiEvent event : events) {
+            USBMonitor.DeviceInfo device = event.device;
+            if (event.kind == DeviceChange.Kind.CHANGED) {
+                appendLogLines("Detected: Device details changed - " + device.toLogString());
+            } else if (event.kind == DeviceChange.Kind.ADDED) {
+                if (autoMonitoring) logAutoEvent(device, "Inserted");
+                appendLogLines("Detected: Device connected - " + device.toLogString());
+
+                if (device.isInputDevice()) {
+                    appendLogLines(" Input device connection: " + device.getProductName());
+                }
+            } else {
+                if (autoMonitoring) logAutoEvent(device, "Removed");
+                appendLogLines("Detected: Device disconnected - " + device.toLogString());
+
+                if (device.isInputDevice()) {
+                    appendLogLines(" Input device detected: " + device.getProductName());
+                }
+            }
+        }
+        scrollLogToEnd();
+        rebuildDeviceList();
+    }
 // Refresh device list with filtering
     private void refreshDeviceList() {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                if (!usbInitialized) {
-                    deviceComboBox.removeAllItems();
-                    deviceComboBox.addItem("USB Monitoring initializing...");
-                    return;
-                }
+        SwingUtilities.invokeLater(this::rebuildDeviceList);
+    }
+// Rebuild the device combo box; EDT only
+    private void rebuildDeviceList() {
+        try {
+            if (!usbInitialized) {
+                deviceComboBox.removeAllItems();
+                deviceComboBox.addItem("USB Monitoring initializing...");
+                return;
+            }
 
-                List<USBMonitor.DeviceInfo> devices = USBMonitor.getConnectedDevices();
-                currentDevices.clear();
+            List<USBMonitor.DeviceInfo> devices = USBMonitor.getConnectedDevices();
+            currentDevices.clear();
 
-                boolean filterInput = showOnlyInputDevicesCheckbox.isSelected();
-                int totalDevices = devices.size();
-                int displayedDevices = 0;
-                int inputDevices = 0;
+            boolean filterInput = showOnlyInputDevicesCheckbox.isSelected();
+            int totalDevices = devices.size();
+            int displayedDevices = 0;
+            int inputDevices = 0;
 
-                for (USBMonitor.DeviceInfo device : devices) {
-                    if (device.isInputDevice()) {
-                        inputDevices++;
-                    }
+            for (USBMonitor.DeviceInfo device : devices) {
+                boolean input = device.isInputDevice();
+                if (input) {
+                    inputDevices++;
                 }
-
-                for (USBMonitor.DeviceInfo device : devices) {
-                    if (!filterInput || device.isInputDevice()) {
-                        currentDevices.add(device);
-                        displayedDevices++;
-                    }
+                if (!filterInput || input) {
+                    currentDevices.add(device);
+                    displayedDevices++;
                 }
+            }
 
-                DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>();
-                
-                if (currentDevices.isEmpty()) {
-                    if (filterInput) {
-                        model.addElement("No input devices found (" + totalDevices + " total devices)");
-                    } else {
-                        model.addElement("No USB devices detected");
-                    }
+            DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>();
+            
+            if (currentDevices.isEmpty()) {
+                if (filterInput) {
+                    model.addElement("No input devices found (" + totalDevices + " total devices)");
                 } else {
-                   for (USBMonitor.DeviceInfo d : currentDevices) {
-                         String displayText = d.toDisplayString();
-                         model.addElement(displayText);
-                        }
+                    model.addElement("No USB devices detected");
                 }
-                
-                deviceComboBox.setModel(model);
-                deviceComboBox.setToolTipText(String.format(
-                    "Showing %d of %d total devices (%d input devices)", 
-                    displayedDevices, totalDevices, inputDevices
-                ));
-
-            } catch (Exception e) {
-                addToLogArea("Error refreshing device list: " + e.getMessage());
+            } else {
+               for (USBMonitor.DeviceInfo d : currentDevices) {
+                     String displayText = d.toDisplayString();
+                     model.addElement(displayText);
+                    }
             }
-        });
+            
+            deviceComboBox.setModel(model);
+            deviceComboBox.setToolTipText(String.format(
+                "Showing %d of %d total devices (%d input devices)", 
+                displayedDevices, totalDevices, inputDevices
+            ));
+
+        } catch (Exception e) {
+            addToLogArea("Error refreshing device list: " + e.getMessage());
+        }
     }
 // Detectecting  and logging input devices
     private void detectInputDevices() {
@@ -783,6 +1675,8 @@ public class UsbMonitorGUI extends JFrame {
         try {
             List<USBMonitor.DeviceInfo> devices = USBMonitor.getConnectedDevices();
             addToLogArea("Test Passed: Found " + devices.size() + " USB device(s)");
+            addToLogArea("UI updates: " + deviceUiUpdates.getSubmittedCount() + " device events in "
+                    + deviceUiUpdates.getBatchCount() + " batches (" + deviceUiUpdates.getCoalescedCount() + " coalesced)");
             
             for (USBMonitor.DeviceInfo device : devices) {
                 addToLogArea("  - " + device.toLogString());
@@ -795,6 +1689,67 @@ public class UsbMonitorGUI extends JFrame {
             addToLogArea("Test failed: " + e.getMessage());
         }
     }
+// Index rotated segments and the current log in the background, oldest first
+    private void loadHistory(LogRotator rotator) {
+        // Taken before the index listens for live events or anything is logged, so the loader reads exactly
+        // what was logged before and nothing is indexed twice
+        // The active log is opened now because the logger may rotate it away before the loader gets to it
+        List<File> segments = rotator.listSegments();
+        File activeLog = new File(logger.getLogFilePath());
+        long activeLength = activeLog.length();
+        InputStream activeIn = null;
+        try {
+            if (activeLength > 0) activeIn = Files.newInputStream(activeLog.toPath());
+        } catch (IOException e) {
+            System.err.println("Error indexing " + activeLog.getName() + ": " + e.getMessage());
+        }
+        InputStream active = activeIn;
+        Thread loader = new Thread(() -> {
+            int loaded = 0;
+            for (File segment : segments) {
+                // Compressed since it was listed
+                File log = segment.isFile() ? segment : new File(segment.getPath() + ".gz");
+                if (!log.isFile()) continue;
+                try {
+                    loaded += historyIndex.loadTextLog(log);
+                } catch (IOException e) {
+                    System.err.println("Error indexing " + log.getName() + ": " + e.getMessage());
+                }
+            }
+            if (active != null) {
+                try (InputStream in = active) {
+                    loaded += historyIndex.loadTextLog(in, activeLength);
+                } catch (IOException e) {
+                    System.err.println("Error indexing " + activeLog.getName() + ": " + e.getMessage());
+                }
+            }
+            int events = loaded;
+            SwingUtilities.invokeLater(() -> addToLogArea("History index loaded " + events + " logged events"));
+        }, "USB-History-Loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+// Look up a serial number, VID:PID or device name in the history index
+    private void showDeviceHistory() {
+        String query = JOptionPane.showInputDialog(this, "Serial number, VID:PID or device name:", "Device History", JOptionPane.QUESTION_MESSAGE);
+        if (query == null || query.trim().isEmpty()) return;
+        query = query.trim();
+        long weekAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(7);
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        boolean found = false;
+        addToLogArea("History for '" + query + "':");
+        for (HistoryIndex.Key key : HistoryIndex.Key.values()) {
+            int total = historyIndex.count(key, query, null, Long.MIN_VALUE, Long.MAX_VALUE);
+            if (total == 0) continue;
+            found = true;
+            long last = historyIndex.lastEvent(key, query, "Inserted");
+            addToLogArea("  By " + key.name().toLowerCase().replace('_', ':') + ": " + total + " events, "
+                    + historyIndex.count(key, query, "Inserted", weekAgo, Long.MAX_VALUE) + " connections in the last 7 days, last connected "
+                    + (last < 0 ? "never" : LocalDateTime.ofInstant(Instant.ofEpochMilli(last), ZoneId.systemDefault()).format(format))
+                    + ", seen on " + String.join(", ", historyIndex.hosts(key, query)));
+        }
+        if (!found) addToLogArea("  No events recorded");
+    }
 // Toggle auto monitoring state
     private void toggleAutoMonitoring() {
         if (!usbInitialized) {
@@ -816,7 +1771,8 @@ public class UsbMonitorGUI extends JFrame {
         }
         MyDevice dev = new MyDevice(name, manufacturer.isEmpty() ? "Unknown" : manufacturer, "Manual", "Manual Entry", null, null);
         LogEntry entry = new LogEntry(dev, action);
-        logEntries.add(entry);
+        eventHistory.add(entry);
+        historyIndex.add(HistoryIndex.LOCAL_HOST, entry);
         logger.log(entry);
         addToLogArea("Manual: " + entry.formatEntry());
     }
@@ -824,13 +1780,31 @@ public class UsbMonitorGUI extends JFrame {
     private void logAutoEvent(USBMonitor.DeviceInfo deviceInfo, String action) {
         MyDevice dev = deviceInfo.toMyDevice();
         LogEntry entry = new LogEntry(dev, action);
-        logEntries.add(entry);
+        eventHistory.add(entry);
         logger.log(entry);
     }
+// Page older lines from the log file in above the current ones; the model reads them off the EDT
+    private void loadOlderLogEntries() {
+        logModel.loadOlder(LOG_PAGE_LINES, loaded -> {
+            if (loaded > 0) logList.ensureIndexIsVisible(0);
+        });
+    }
 // Utility to append text to log area safely from any thread
     private void addToLogArea(String text) {
-        SwingUtilities.invokeLater(() -> {
-            logArea.append(text + "\n");
-            logArea.setCaretPosition(logArea.getDocument().getLength());
-        });
+        if (SwingUtilities.isEventDispatchThread()) {
+            appendLogLines(text);
+            scrollLogToEnd();
+        } else {
+            SwingUtilities.invokeLater(() -> addToLogArea(text));
+        }
+    }
+// Append to the log model without scrolling; EDT only
+    private void appendLogLines(String text) {
+        for (String line : text.split("\n")) {
+            logModel.append(line);
+        }
+    }
+
+    private void scrollLogToEnd() {
+        logList.ensureIndexIsVisible(logModel.getSize() - 1);
     }}
\ No newline at end of file
@@ -0,0 +1,137 @@
+// LoadHarness.java
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.concurrent.atomic.LongAdder;
+
+// End-to-end load test: a SimulatedDeviceSource drives the real pipeline (parallel scan, merge, snapshot diff,
+// debouncer, listeners) into a Logger and the GUI's ActivityLogModel through an EdtCoalescer, then reports
+// events per second, latency from each device's simulated change to its listener callback, and allocation rate.
+//
+// Usage: java LoadHarness [--devices 500] [--pattern steady|burst|flapping|hub-storm] [--rate 1000]
+//                         [--step-ms 10] [--seconds 10] [--seed 42] [--debounce]
+public class LoadHarness {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int devices = 500;
+        SimulatedDeviceSource.Pattern pattern = SimulatedDeviceSource.Pattern.STEADY;
+        int rate = 1000;
+        long stepMillis = 10;
+        int seconds = 10;
+        long seed = 42;
+        boolean debounce = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--devices": devices = Integer.parseInt(args[++i]); break;
+                case "--pattern": pattern = SimulatedDeviceSource.Pattern.valueOf(args[++i].toUpperCase().replace('-', '_')); break;
+                case "--rate": rate = Integer.parseInt(args[++i]); break;
+                case "--step-ms": stepMillis = Long.parseLong(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--debounce": debounce = true; break;
+                default:
+                    System.err.println("Usage: java LoadHarness [--devices N] [--pattern steady|burst|flapping|hub-storm] [--rate EVENTS_PER_S] [--step-ms MS] [--seconds N] [--seed N] [--debounce]");
+                    System.exit(2);
+            }
+        }
+
+        int changesPerStep = (int) Math.max(1, Math.round(rate * stepMillis / 1000.0));
+        SimulatedDeviceSource sim = new SimulatedDeviceSource(devices, pattern, changesPerStep, stepMillis, seed);
+        File logFile = File.createTempFile("usb-load", ".log");
+        logFile.deleteOnExit();
+        Logger logger = new Logger(logFile.getPath());
+        ActivityLogModel logModel = new ActivityLogModel(5000, null, null);
+        EdtCoalescer<String> uiUpdates = new EdtCoalescer<>(lines -> {
+            for (String line : lines) logModel.append(line);
+        });
+
+        Histogram latencyMicros = new Histogram();
+        LongAdder connected = new LongAdder(), disconnected = new LongAdder(), changed = new LongAdder(), flapping = new LongAdder();
+        USBMonitor.addEventListener(new USBMonitor.USBEventListener() {
+            public void onDeviceConnected(USBMonitor.DeviceInfo device) {
+                connected.increment();
+                deliver(device, "Inserted");
+            }
+
+            public void onDeviceDisconnected(USBMonitor.DeviceInfo device) {
+                disconnected.increment();
+                deliver(device, "Removed");
+            }
+
+            public void onDeviceChanged(USBMonitor.DeviceInfo previous, USBMonitor.DeviceInfo current) {
+                changed.increment();
+                deliver(current, "Changed");
+            }
+
+            public void onDeviceFlapping(USBMonitor.DeviceInfo device, int transitions, long windowMillis) {
+                flapping.increment();
+            }
+
+            // Same work the GUI does per event: one log entry and one activity line
+            private void deliver(USBMonitor.DeviceInfo device, String action) {
+                logger.log(new LogEntry(device.toMyDevice(), action));
+                uiUpdates.submit("Detected: Device " + action + " - " + device.toLogString());
+                // From the step that changed this device; with --debounce this includes the debounce window
+                long changedNanos = sim.getChangeNanos(device);
+                if (changedNanos != 0) latencyMicros.record((System.nanoTime() - changedNanos) / 1000);
+            }
+        });
+
+        USBMonitor.setLibusbEnabled(false);
+        USBMonitor.setDeviceSources(Collections.singletonList(sim));
+        USBMonitor.setEventSource(sim);
+        if (!debounce) USBMonitor.setDebounce(0, 0, 0, 0);
+
+        System.out.printf("%s, target %.0f events/s (%d changes every %d ms), %d s%n",
+                sim.getName(), sim.getEventRate(), changesPerStep, stepMillis, seconds);
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        long bytesBefore = allocatedBytes();
+        long gcCountBefore = gcCount(), gcTimeBefore = gcTime();
+        long start = System.nanoTime();
+        USBMonitor.initialize();
+        Thread.sleep(seconds * 1000L);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long bytes = allocatedBytes() - bytesBefore;
+        USBMonitor.cleanup();
+        logger.close();
+
+        long events = connected.sum() + disconnected.sum() + changed.sum();
+        System.out.printf("events      %d in %.1f s = %.0f events/s (connected %d, disconnected %d, changed %d, flapping %d; %d simulated changes)%n",
+                events, elapsed, events / elapsed, connected.sum(), disconnected.sum(), changed.sum(), flapping.sum(), sim.getChangeCount());
+        System.out.printf("latency us  p50 %d  p90 %d  p99 %d  p99.9 %d  max %d%n",
+                latencyMicros.getPercentile(0.5), latencyMicros.getPercentile(0.9), latencyMicros.getPercentile(0.99),
+                latencyMicros.getPercentile(0.999), latencyMicros.getMax());
+        System.out.printf("allocation  %.1f MB/s, %d B/event, GC %d collections / %d ms%n",
+                bytes / elapsed / (1024 * 1024), events == 0 ? 0 : bytes / events, gcCount() - gcCountBefore, gcTime() - gcTimeBefore);
+        System.out.printf("logger      %d bytes written, %d dropped; UI %d lines in %d batches%n",
+                logFile.length(), logger.getDroppedCount(), uiUpdates.getSubmittedCount(), uiUpdates.getBatchCount());
+        logFile.delete();
+        System.exit(0);
+    }
+
+    // Bytes allocated by all live threads; threads that exit during the run are not counted
+    private static long allocatedBytes() {
+        long total = 0;
+        for (long id : THREADS.getAllThreadIds()) {
+            long bytes = THREADS.getThreadAllocatedBytes(id);
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) total += Math.max(0, gc.getCollectionCount());
+        return total;
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) total += Math.max(0, gc.getCollectionTime());
+        return total;
+    }
+}
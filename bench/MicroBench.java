@@ -0,0 +1,155 @@
+// MicroBench.java
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+// Minimal JMH-style harness: warmup and measurement iterations, throughput, and (like -prof gc)
+// bytes allocated per operation on the benchmark thread.
+// JMH itself cannot be used here because it refuses benchmark classes in the default package.
+final class MicroBench {
+    // One benchmark operation; i is a non-negative invocation counter so inputs can be rotated
+    interface Op {
+        void run(int i) throws Exception;
+    }
+
+    static final class Options {
+        int warmupIterations = 3;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        boolean gcProfiler = false;
+        String filter = null;
+    }
+
+    static final class Result {
+        final String name;
+        final String param;
+        final double opsPerSecond;
+        final double bytesPerOp;
+
+        Result(String name, String param, double opsPerSecond, double bytesPerOp) {
+            this.name = name;
+            this.param = param;
+            this.opsPerSecond = opsPerSecond;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    // Blackhole: benchmarks hand results here so the JIT cannot drop the work
+    static volatile Object sinkObject;
+    static int sinkCount;
+
+    static void consume(Object o) { sinkObject = o; }
+    static void consume(boolean b) { if (b) sinkCount++; }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Options options;
+    private final List<Result> results = new ArrayList<>();
+
+    MicroBench(Options options) {
+        this.options = options;
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        printHeader();
+    }
+
+    List<Result> getResults() { return results; }
+
+    // Run one benchmark unless it is excluded by the name filter
+    Result run(String name, Object param, Op op) throws Exception {
+        if (options.filter != null && !name.contains(options.filter)) return null;
+
+        // Size chunks so the clock is read roughly every 100 us
+        long chunk = calibrate(op);
+        int counter = 0;
+        for (int w = 0; w < options.warmupIterations; w++) {
+            counter = iteration(op, chunk, counter, null);
+        }
+        long[] totals = new long[3]; // ops, nanos, bytes
+        for (int m = 0; m < options.iterations; m++) {
+            counter = iteration(op, chunk, counter, totals);
+        }
+
+        Result result = new Result(name, String.valueOf(param),
+                totals[0] * 1e9 / totals[1], (double) totals[2] / totals[0]);
+        results.add(result);
+        print(result);
+        return result;
+    }
+
+    private long calibrate(Op op) throws Exception {
+        long start = System.nanoTime();
+        int n = 0;
+        while (System.nanoTime() - start < 20_000_000L) op.run(n++);
+        double nanosPerOp = (System.nanoTime() - start) / (double) n;
+        return Math.max(1, (long) (100_000 / nanosPerOp));
+    }
+
+    private int iteration(Op op, long chunk, int counter, long[] totals) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long deadline = start + options.iterationMillis * 1_000_000L;
+        long ops = 0;
+        long now;
+        do {
+            for (long k = 0; k < chunk; k++) {
+                op.run(counter);
+                counter = (counter + 1) & Integer.MAX_VALUE;
+            }
+            ops += chunk;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long bytes = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        if (totals != null) {
+            totals[0] += ops;
+            totals[1] += now - start;
+            totals[2] += bytes;
+        }
+        return counter;
+    }
+
+    private void printHeader() {
+        if (options.gcProfiler) {
+            System.out.printf("%-34s %8s %16s %12s %12s %14s%n", "Benchmark", "(size)", "ops/s", "ns/op", "B/op", "alloc MB/s");
+        } else {
+            System.out.printf("%-34s %8s %16s %12s%n", "Benchmark", "(size)", "ops/s", "ns/op");
+        }
+    }
+
+    private void print(Result r) {
+        double nanosPerOp = 1e9 / r.opsPerSecond;
+        if (options.gcProfiler) {
+            System.out.printf("%-34s %8s %16.1f %12.1f %12.1f %14.1f%n", r.name, r.param, r.opsPerSecond, nanosPerOp,
+                    r.bytesPerOp, r.bytesPerOp * r.opsPerSecond / (1024 * 1024));
+        } else {
+            System.out.printf("%-34s %8s %16.1f %12.1f%n", r.name, r.param, r.opsPerSecond, nanosPerOp);
+        }
+    }
+
+    // Parse -wi N, -i N, -r MS, -prof gc and an optional name filter; returns other options with their values
+    static List<String> parseOptions(String[] args, Options options) {
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi": options.warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i": options.iterations = Integer.parseInt(args[++i]); break;
+                case "-r": options.iterationMillis = Long.parseLong(args[++i]); break;
+                case "-prof":
+                    if (!"gc".equals(args[++i])) throw new IllegalArgumentException("Only -prof gc is supported");
+                    options.gcProfiler = true;
+                    break;
+                default:
+                    if (!args[i].startsWith("-")) {
+                        options.filter = args[i];
+                    } else {
+                        // Benchmark-specific option with one value
+                        rest.add(args[i]);
+                        if (i + 1 < args.length) rest.add(args[++i]);
+                    }
+            }
+        }
+        return rest;
+    }
+}
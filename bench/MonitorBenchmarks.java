@@ -0,0 +1,121 @@
+// MonitorBenchmarks.java
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+// Benchmarks for the scan/merge, classify, format and log paths over synthetic device lists.
+//
+// Usage: java MonitorBenchmarks [-wi 3] [-i 5] [-r 1000] [-prof gc] [-p 10,100,1000,10000] [name filter]
+public class MonitorBenchmarks {
+    public static void main(String[] args) throws Exception {
+        MicroBench.Options options = new MicroBench.Options();
+        List<String> rest = MicroBench.parseOptions(args, options);
+        int[] sizes = { 10, 100, 1000, 10000 };
+        for (int i = 0; i < rest.size(); i++) {
+            if (rest.get(i).equals("-p")) sizes = parseSizes(rest.get(++i));
+        }
+
+        MicroBench bench = new MicroBench(options);
+        for (int size : sizes) {
+            mergeBenchmarks(bench, size);
+            deviceBenchmarks(bench, size);
+            wmiParseBenchmark(bench, size);
+        }
+        loggerBenchmark(bench);
+    }
+
+    // scanAndMergeDevices-style merge followed by the snapshot diff
+    private static void mergeBenchmarks(MicroBench bench, int size) throws Exception {
+        List<USBMonitor.DeviceInfo> devices = SyntheticDevices.generate(size, 42);
+        List<DeviceSource> steady = Collections.singletonList(listSource(devices));
+
+        DeviceSnapshotStore steadyStore = new DeviceSnapshotStore(1024);
+        steadyStore.publish(USBMonitor.mergeDevices(steady));
+        bench.run("merge.steady", size, i -> MicroBench.consume(steadyStore.publish(USBMonitor.mergeDevices(steady))));
+
+        // Two scans that differ in 1% of devices (at least one), alternated so every diff finds changes
+        List<USBMonitor.DeviceInfo> churned = new ArrayList<>(devices);
+        int changed = Math.max(1, size / 100);
+        List<USBMonitor.DeviceInfo> replacements = SyntheticDevices.generate(changed, 7);
+        for (int c = 0; c < changed; c++) churned.set(c, replacements.get(c));
+        List<List<DeviceSource>> scans = new ArrayList<>();
+        scans.add(steady);
+        scans.add(Collections.singletonList(listSource(churned)));
+        DeviceSnapshotStore churnStore = new DeviceSnapshotStore(1024);
+        bench.run("merge.churn1pct", size, i -> MicroBench.consume(churnStore.publish(USBMonitor.mergeDevices(scans.get(i & 1)))));
+    }
+
+    private static void deviceBenchmarks(MicroBench bench, int size) throws Exception {
+        USBMonitor.DeviceInfo[] devices = SyntheticDevices.generate(size, 42).toArray(new USBMonitor.DeviceInfo[0]);
+        LogEntry[] entries = new LogEntry[size];
+        for (int i = 0; i < size; i++) entries[i] = new LogEntry(devices[i].toMyDevice(), i % 2 == 0 ? "Inserted" : "Removed");
+
+        // A rescan reporting unchanged fields: should return the registered record without allocating
+        DeviceRegistry registry = new DeviceRegistry(size * 2);
+        for (USBMonitor.DeviceInfo d : devices) registry.intern(d);
+        bench.run("registry.intern", size, i -> {
+            USBMonitor.DeviceInfo d = devices[i % size];
+            MicroBench.consume(registry.intern(d.getDeviceId(), d.getProductName(), d.getManufacturer(),
+                    d.getSerialNumber(), d.getDeviceType(), d.getStorageCapacity()));
+        });
+        bench.run("device.isInputDevice", size, i -> MicroBench.consume(devices[i % size].isInputDevice()));
+        bench.run("device.toLogString", size, i -> MicroBench.consume(devices[i % size].toLogString()));
+        bench.run("device.toDisplayString", size, i -> MicroBench.consume(devices[i % size].toDisplayString()));
+        bench.run("logEntry.formatEntry", size, i -> MicroBench.consume(entries[i % size].formatEntry()));
+
+        // The Logger's encoding path: expected to allocate 0 B/op once device bytes are cached
+        LogEncoder encoder = new LogEncoder();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        bench.run("logEncoder.encode", size, i -> {
+            LogEntry entry = entries[i % size];
+            if (!encoder.encode(entry, buffer)) {
+                buffer.clear();
+                encoder.encode(entry, buffer);
+            }
+        });
+    }
+
+    private static void wmiParseBenchmark(MicroBench bench, int size) throws Exception {
+        String output = SyntheticDevices.wmicListOutput(size, 42);
+        bench.run("wmi.parse", size, i -> MicroBench.consume(WmiUsbScanner.parse(new Scanner(output))));
+    }
+
+    // Sustained Logger.log() throughput: the producer backs off while the writer thread catches up,
+    // so the rate includes formatting and writing, not just enqueueing.
+    // B/op only covers the producer thread; the writer thread's allocation is not attributed.
+    private static void loggerBenchmark(MicroBench bench) throws Exception {
+        File file = File.createTempFile("usb-bench", ".log");
+        file.deleteOnExit();
+        int capacity = 1 << 16;
+        Logger logger = new Logger(file.getPath(), capacity, 256, 50, Logger.Durability.FLUSH);
+        LogEntry[] entries = new LogEntry[1000];
+        List<USBMonitor.DeviceInfo> devices = SyntheticDevices.generate(entries.length, 42);
+        for (int i = 0; i < entries.length; i++) entries[i] = new LogEntry(devices.get(i).toMyDevice(), "Inserted");
+
+        bench.run("logger.log", entries.length, i -> {
+            while (logger.getQueueDepth() > capacity / 2) Thread.yield();
+            logger.log(entries[i % entries.length]);
+        });
+        logger.close();
+        if (logger.getDroppedCount() > 0) System.out.println("logger.log dropped " + logger.getDroppedCount() + " entries");
+        file.delete();
+    }
+
+    private static DeviceSource listSource(List<USBMonitor.DeviceInfo> devices) {
+        return new DeviceSource() {
+            public String getName() { return "synthetic"; }
+            public List<USBMonitor.DeviceInfo> scan() { return devices; }
+        };
+    }
+
+    private static int[] parseSizes(String list) {
+        String[] parts = list.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) sizes[i] = Integer.parseInt(parts[i].trim());
+        return sizes;
+    }
+}
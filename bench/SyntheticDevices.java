@@ -0,0 +1,56 @@
+// SyntheticDevices.java
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Reproducible device lists for benchmarks
+final class SyntheticDevices {
+    private static final String[] PRODUCTS = {
+        "USB Keyboard", "Optical Mouse", "Ultra Flash Drive", "HD Webcam", "USB Hub",
+        "Gamepad Controller", "Laser Printer", "USB Audio Device", "Fingerprint Reader", "Portable SSD"
+    };
+    private static final String[] MANUFACTURERS = {
+        "Logitech", "SanDisk", "Kingston", "Microsoft", "Genesys Logic", "Realtek", "Samsung", "Unknown Manufacturer"
+    };
+    private static final String[] TYPES = {
+        "Composite Device", "Human Interface Device (HID)", "Mass Storage", "USB Hub", "Printer", "Video Device", "USB Device"
+    };
+
+    private SyntheticDevices() {}
+
+    static List<USBMonitor.DeviceInfo> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<USBMonitor.DeviceInfo> devices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            devices.add(device(random, i));
+        }
+        return devices;
+    }
+
+    static USBMonitor.DeviceInfo device(Random random, int index) {
+        String type = TYPES[random.nextInt(TYPES.length)];
+        boolean storage = type.equals("Mass Storage");
+        return new USBMonitor.DeviceInfo(
+            String.format("%04X:%04X", random.nextInt(0x10000), index & 0xFFFF),
+            PRODUCTS[random.nextInt(PRODUCTS.length)],
+            MANUFACTURERS[random.nextInt(MANUFACTURERS.length)],
+            random.nextInt(4) == 0 ? "Unknown" : Long.toHexString(random.nextLong()).toUpperCase(),
+            type,
+            storage ? (8 << random.nextInt(6)) + " GB" : null
+        );
+    }
+
+    // wmic diskdrive ... /format:list output describing count drives
+    static String wmicListOutput(int count, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("\r\n\r\n");
+            sb.append("DeviceID=\\\\.\\PHYSICALDRIVE").append(i + 1).append("\r\n");
+            sb.append("Model=").append(PRODUCTS[random.nextInt(PRODUCTS.length)]).append(" USB Device\r\n");
+            sb.append("SerialNumber=").append(Long.toHexString(random.nextLong()).toUpperCase()).append("\r\n");
+            sb.append("Size=").append((long) (8 + random.nextInt(500)) * 1000204886016L / 1000).append("\r\n");
+        }
+        return sb.toString();
+    }
+}
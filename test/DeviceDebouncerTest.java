@@ -0,0 +1,137 @@
+// DeviceDebouncerTest.java
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Replays connect/disconnect sequences through DeviceDebouncer with an explicit clock
+// (submit(change, now) / expire(now)) and checks which events come out.
+//
+// Usage: java DeviceDebouncerTest   (exits with status 1 on the first failure)
+public class DeviceDebouncerTest {
+    private static final USBMonitor.DeviceInfo DISK =
+            new USBMonitor.DeviceInfo("0781:5567", "Cruzer", "SanDisk", "4C530001", "Mass Storage", null);
+    private static final USBMonitor.DeviceInfo DISK_WITH_SIZE =
+            new USBMonitor.DeviceInfo("0781:5567", "Cruzer", "SanDisk", "4C530001", "Mass Storage", "16 GB");
+
+    private final List<String> events = new ArrayList<>();
+    private final Object lock = new Object();
+    private final DeviceDebouncer.Output output = new DeviceDebouncer.Output() {
+        public void connected(USBMonitor.DeviceInfo device) { events.add("connected"); }
+        public void disconnected(USBMonitor.DeviceInfo device) { events.add("disconnected"); }
+        public void changed(USBMonitor.DeviceInfo previous, USBMonitor.DeviceInfo current) { events.add("changed"); }
+        public void flapping(USBMonitor.DeviceInfo device, int transitions, long windowMillis) { events.add("flapping"); }
+    };
+
+    public static void main(String[] args) {
+        DeviceDebouncerTest test = new DeviceDebouncerTest();
+        try {
+            test.newDeviceIsAnnouncedAtOnce();
+            test.bounceWithinWindowIsSilent();
+            test.bounceWithNewDetailsIsOneChange();
+            test.removalWaitsForWindow();
+            test.removalOfInitialDeviceIsAnnounced();
+            test.flappingIsSummarizedUntilQuiet();
+            test.idleDevicesAreForgotten();
+        } catch (AssertionError e) {
+            System.err.println("FAILED " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("DeviceDebouncerTest: all passed");
+    }
+
+    void newDeviceIsAnnouncedAtOnce() {
+        DeviceDebouncer debouncer = newDebouncer();
+        debouncer.submit(added(DISK), 0);
+        check("new device", "connected");
+    }
+
+    void bounceWithinWindowIsSilent() {
+        DeviceDebouncer debouncer = connected(DISK);
+        debouncer.submit(removed(DISK), 1000);
+        debouncer.expire(1400);
+        debouncer.submit(added(DISK), 1800);
+        debouncer.expire(5000);
+        check("bounce");
+    }
+
+    void bounceWithNewDetailsIsOneChange() {
+        DeviceDebouncer debouncer = connected(DISK);
+        debouncer.submit(removed(DISK), 1000);
+        debouncer.submit(added(DISK_WITH_SIZE), 1500);
+        debouncer.expire(10000);
+        check("bounce with new details", "changed");
+    }
+
+    void removalWaitsForWindow() {
+        DeviceDebouncer debouncer = connected(DISK);
+        debouncer.submit(removed(DISK), 1000);
+        debouncer.expire(2499);
+        check("removal inside window");
+        debouncer.expire(2500);
+        check("removal after window", "disconnected");
+    }
+
+    void removalOfInitialDeviceIsAnnounced() {
+        // Present in the first snapshot, so the debouncer has never seen it connect
+        DeviceDebouncer debouncer = newDebouncer();
+        debouncer.submit(removed(DISK), 0);
+        debouncer.expire(1500);
+        check("removal of initial device", "disconnected");
+    }
+
+    void flappingIsSummarizedUntilQuiet() {
+        DeviceDebouncer debouncer = connected(DISK);
+        long t = 0;
+        for (int i = 0; i < 10; i++) {
+            t += 1000;
+            debouncer.submit(removed(DISK), t);
+            debouncer.expire(t + 400);
+            t += 1000;
+            debouncer.submit(added(DISK), t);
+            debouncer.expire(t + 400);
+        }
+        check("flapping", "flapping");
+        debouncer.submit(removed(DISK), t + 1000);
+        debouncer.expire(t + 1000 + 29999);
+        check("flapping, not yet quiet");
+        debouncer.expire(t + 1000 + 30000);
+        check("flapping, quiet", "disconnected");
+    }
+
+    void idleDevicesAreForgotten() {
+        DeviceDebouncer debouncer = connected(DISK);
+        debouncer.submit(removed(DISK), 1000);
+        debouncer.expire(100000);
+        check("idle removal", "disconnected");
+        if (debouncer.size() != 0) throw new AssertionError("idle devices: " + debouncer.size() + " still tracked");
+    }
+
+    private DeviceDebouncer newDebouncer() {
+        events.clear();
+        return new DeviceDebouncer(lock, output);
+    }
+
+    // A debouncer that has already announced the device at time 0
+    private DeviceDebouncer connected(USBMonitor.DeviceInfo device) {
+        DeviceDebouncer debouncer = newDebouncer();
+        debouncer.submit(added(device), 0);
+        events.clear();
+        return debouncer;
+    }
+
+    private void check(String name, String... expected) {
+        if (!events.equals(Arrays.asList(expected))) {
+            throw new AssertionError(name + ": got " + events + ", expected " + Arrays.toString(expected));
+        }
+        System.out.println("ok  " + name);
+        events.clear();
+    }
+
+    private static DeviceChange added(USBMonitor.DeviceInfo device) {
+        return new DeviceChange(DeviceChange.Kind.ADDED, 0, device.getKey(), null, device);
+    }
+
+    private static DeviceChange removed(USBMonitor.DeviceInfo device) {
+        return new DeviceChange(DeviceChange.Kind.REMOVED, 0, device.getKey(), device, null);
+    }
+}
@@ -0,0 +1,133 @@
+// DevicePolicyTest.java
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+// Compiles rule sets with DevicePolicy and checks which rule a device gets: the first matching rule wins
+// whichever structure (VID:PID/vendor/product maps, range table, serial trie, keyword matchers) holds it,
+// overlapping ranges are flattened so each VID:PID gets the lowest covering rule, FFFF:FFFF is an ordinary
+// ID, and a rule file that fails to compile leaves PolicyEngine on its previous rules.
+//
+// Usage: java DevicePolicyTest   (exits with status 1 on the first failure)
+public class DevicePolicyTest {
+    public static void main(String[] args) throws IOException {
+        try {
+            firstRuleWinsAcrossStructures();
+            rangesAreFlattened();
+            edgeIds();
+            rejectedReloadKeepsRules();
+        } catch (AssertionError e) {
+            System.err.println("FAILED " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("DevicePolicyTest: all passed");
+    }
+
+    static void firstRuleWinsAcrossStructures() {
+        DevicePolicy policy = DevicePolicy.parse(Arrays.asList(
+                "# comment",
+                "alert keyword=flash",              // line 2
+                "allow serial=4C53*",               // line 3
+                "deny  vidpid=0781:5567",           // line 4
+                "allow vid=0781",                   // line 5
+                "alert vidpid=0781:0000-0781:FFFF", // line 6
+                "deny  type=mass storage",          // line 7
+                "allow pid=C52B",                   // line 8
+                "default alert"));
+        check(policy.getRuleCount() == 7, "rule count");
+        expect(policy, device("0781:5567", "Cruzer Flash", "4C530001", "Mass Storage"), 2, "keyword before serial and vidpid");
+        expect(policy, device("0781:5567", "Cruzer", "4C530001", "Mass Storage"), 3, "serial prefix before vidpid");
+        expect(policy, device("0781:5567", "Cruzer", "XYZ", "Mass Storage"), 4, "exact vidpid before vendor");
+        expect(policy, device("0781:1234", "Cruzer", "XYZ", "Mass Storage"), 5, "vendor before range and type");
+        expect(policy, device("1234:5678", "Disk", null, "Mass Storage"), 7, "type keyword");
+        expect(policy, device("046D:C52B", "Receiver", null, "HID"), 8, "product ID of any vendor");
+        expect(policy, device("046D:C077", "Mouse", null, "HID"), 9, "default rule");
+        check(policy.evaluate(device("046D:C077", "Mouse", null, "HID")).verdict == DevicePolicy.Verdict.ALERT, "default verdict");
+        expect(policy, device("WMI_1234", "Keyboard", null, "HID"), 9, "non VID:PID ID only matches other fields");
+    }
+
+    static void rangesAreFlattened() {
+        DevicePolicy policy = DevicePolicy.parse(Arrays.asList(
+                "alert vidpid=1000:0100-01FF",      // line 1, inside line 2's range
+                "deny  vidpid=1000:0000-1000:0FFF", // line 2
+                "allow vidpid=0FFF:FFF0-1000:0010", // line 3, overlaps the start of line 2
+                "alert vidpid=1000:0800-2000:0000"  // line 4, overlaps the end of line 2
+        ));
+        expect(policy, device("0FFF:FFEF", "X", null, "HID"), 0, "before every range");
+        expect(policy, device("0FFF:FFF0", "X", null, "HID"), 3, "start of line 3");
+        expect(policy, device("1000:0000", "X", null, "HID"), 2, "line 2 wins where it overlaps line 3");
+        expect(policy, device("1000:0011", "X", null, "HID"), 2, "line 2 after line 3 ends");
+        expect(policy, device("1000:0100", "X", null, "HID"), 1, "nested line 1, lower bound");
+        expect(policy, device("1000:01FF", "X", null, "HID"), 1, "nested line 1, upper bound");
+        expect(policy, device("1000:0200", "X", null, "HID"), 2, "back in line 2 after the nested range");
+        expect(policy, device("1000:0FFF", "X", null, "HID"), 2, "line 2 over line 4");
+        expect(policy, device("1000:1000", "X", null, "HID"), 4, "line 4 after line 2 ends");
+        expect(policy, device("2000:0000", "X", null, "HID"), 4, "inclusive end of line 4");
+        expect(policy, device("2000:0001", "X", null, "HID"), 0, "after every range");
+    }
+
+    static void edgeIds() {
+        DevicePolicy policy = DevicePolicy.parse(Arrays.asList(
+                "deny  vidpid=FFFF:FFFF",
+                "alert vidpid=FFFF:FF00-FFFF:FFFF",
+                "alert vid=FFFF"));
+        expect(policy, device("FFFF:FFFF", "X", null, "HID"), 1, "FFFF:FFFF exact");
+        expect(policy, device("ffff:fff0", "X", null, "HID"), 2, "range up to FFFF:FFFF, lower case");
+        expect(policy, device("FFFF:0001", "X", null, "HID"), 3, "vendor FFFF");
+        expect(policy, device("0000:0000", "X", null, "HID"), 0, "0000:0000");
+        expect(policy, device("FFFF:FFF", "X", null, "HID"), 0, "malformed ID");
+        expect(policy, device("+FFF:FFFF", "X", null, "HID"), 0, "signed ID");
+        for (String bad : new String[] { "deny vidpid=FFFF:GGGG", "deny vidpid=0002:0000-0001:0000", "deny vid=10000",
+                "block vid=0781", "deny color=red" }) {
+            try {
+                DevicePolicy.parse(Arrays.asList(bad));
+                check(false, "rejects '" + bad + "'");
+            } catch (IllegalArgumentException e) {
+                check(true, "rejects '" + bad + "'");
+            }
+        }
+    }
+
+    static void rejectedReloadKeepsRules() throws IOException {
+        File file = File.createTempFile("policy", ".txt");
+        try {
+            Files.write(file.toPath(), "deny vidpid=0781:5567\n".getBytes(StandardCharsets.UTF_8));
+            PolicyEngine engine = new PolicyEngine(file);
+            DevicePolicy loaded = engine.getPolicy();
+            check(loaded.getRuleCount() == 1, "rules loaded");
+
+            Files.write(file.toPath(), "deny vidpid=0781:5567\ndeny vidpid=nonsense\n".getBytes(StandardCharsets.UTF_8));
+            file.setLastModified(file.lastModified() + 2000);
+            check(!engine.reload(), "invalid file rejected");
+            check(engine.getPolicy() == loaded, "previous rules kept");
+            check(engine.check(device("0781:5567", "Cruzer", null, "Mass Storage")).verdict == DevicePolicy.Verdict.DENY,
+                    "previous rules still enforced");
+
+            Files.write(file.toPath(), "alert vid=0781\n".getBytes(StandardCharsets.UTF_8));
+            file.setLastModified(file.lastModified() + 4000);
+            check(engine.reload() && engine.getPolicy().getRuleCount() == 1
+                    && engine.check(device("0781:5567", "Cruzer", null, "Mass Storage")).verdict == DevicePolicy.Verdict.ALERT,
+                    "fixed file installed");
+            engine.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static USBMonitor.DeviceInfo device(String id, String product, String serial, String type) {
+        return new USBMonitor.DeviceInfo(id, product, "Vendor", serial, type, null);
+    }
+
+    // Rule on the given line of the rule list; an implicit 'default allow' has line 0
+    private static void expect(DevicePolicy policy, USBMonitor.DeviceInfo device, int line, String name) {
+        DevicePolicy.Rule rule = policy.evaluate(device);
+        check(rule.lineNumber == line, name + ": got " + rule);
+    }
+
+    private static void check(boolean condition, String name) {
+        if (!condition) throw new AssertionError(name);
+        System.out.println("ok  " + name);
+    }
+}
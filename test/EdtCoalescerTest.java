@@ -0,0 +1,68 @@
+// EdtCoalescerTest.java
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Checks that EdtCoalescer delivers every item: items batched per frame, and items submitted
+// while the handler is still running delivered in a later batch instead of being stranded.
+//
+// Usage: java EdtCoalescerTest   (exits with status 1 on the first failure)
+public class EdtCoalescerTest {
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        try {
+            batchesItemsSubmittedTogether();
+            deliversItemsSubmittedDuringHandler();
+        } catch (AssertionError e) {
+            System.err.println("FAILED " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("EdtCoalescerTest: all passed");
+        System.exit(0);
+    }
+
+    static void batchesItemsSubmittedTogether() throws InterruptedException {
+        List<Integer> handled = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        EdtCoalescer<Integer> coalescer = new EdtCoalescer<>(batch -> {
+            handled.addAll(batch);
+            if (handled.size() == 100) done.countDown();
+        });
+        for (int i = 0; i < 100; i++) coalescer.submit(i);
+        check(done.await(2, TimeUnit.SECONDS), "100 items delivered, got " + handled.size());
+        check(coalescer.getBatchCount() < 100, "items coalesced into " + coalescer.getBatchCount() + " batches");
+    }
+
+    static void deliversItemsSubmittedDuringHandler() throws InterruptedException {
+        List<Integer> handled = new ArrayList<>();
+        CountDownLatch inHandler = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        EdtCoalescer<Integer> coalescer = new EdtCoalescer<>(batch -> {
+            handled.addAll(batch);
+            inHandler.countDown();
+            if (handled.size() == 3) {
+                done.countDown();
+                return;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        coalescer.submit(1);
+        check(inHandler.await(2, TimeUnit.SECONDS), "first batch started");
+        // The handler is sleeping on the EDT now
+        coalescer.submit(2);
+        Thread.sleep(30);
+        coalescer.submit(3);
+        check(done.await(2, TimeUnit.SECONDS), "items submitted during the handler delivered, got " + handled
+                + " in " + coalescer.getBatchCount() + " batches, " + coalescer.getSubmittedCount() + " submitted");
+    }
+
+    private static void check(boolean condition, String name) {
+        if (!condition) throw new AssertionError(name);
+        System.out.println("ok  " + name);
+    }
+}
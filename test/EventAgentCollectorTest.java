@@ -0,0 +1,201 @@
+// EventAgentCollectorTest.java
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+// Runs EventAgents against an EventCollector on the loopback interface, through a proxy that can swallow
+// acknowledgements and cut connections, and checks: events buffered while disconnected go out in full
+// batches; a connection cut after the collector stored events but before the agent saw the ACK is
+// replayed from the last ACK without storing anything twice; a full buffer drops and counts new events;
+// flapping episodes arrive as their own event kind and are indexed when the collector has a history.
+//
+// Usage: java EventAgentCollectorTest   (exits with status 1 on the first failure)
+public class EventAgentCollectorTest {
+    private static final USBMonitor.DeviceInfo DISK =
+            new USBMonitor.DeviceInfo("0781:5567", "Cruzer", "SanDisk", "4C530001", "Mass Storage", null);
+
+    // Forwards connections to the collector; can discard what the collector sends back and cut every connection
+    private static class Proxy implements AutoCloseable {
+        final ServerSocket server;
+        final int target;
+        final List<Socket> sockets = new CopyOnWriteArrayList<>();
+        volatile boolean holdAcks;
+
+        Proxy(int target) throws IOException {
+            this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.target = target;
+            Thread accept = new Thread(() -> {
+                try {
+                    while (true) {
+                        Socket agent = server.accept();
+                        Socket collector = new Socket(InetAddress.getLoopbackAddress(), target);
+                        sockets.add(agent);
+                        sockets.add(collector);
+                        pump(agent, collector, false);
+                        pump(collector, agent, true);
+                    }
+                } catch (IOException e) {
+                    // Closed
+                }
+            }, "Test-Proxy-Accept");
+            accept.setDaemon(true);
+            accept.start();
+        }
+
+        int getPort() { return server.getLocalPort(); }
+
+        void pump(Socket from, Socket to, boolean acks) {
+            Thread t = new Thread(() -> {
+                byte[] chunk = new byte[8192];
+                try {
+                    InputStream in = from.getInputStream();
+                    OutputStream out = to.getOutputStream();
+                    int n;
+                    while ((n = in.read(chunk)) > 0) {
+                        if (acks && holdAcks) continue;
+                        out.write(chunk, 0, n);
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // Cut
+                }
+                closeQuietly(from);
+                closeQuietly(to);
+            }, "Test-Proxy-Pump");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        void cut() {
+            for (Socket s : sockets) closeQuietly(s);
+            sockets.clear();
+        }
+
+        @Override
+        public void close() {
+            cut();
+            try {
+                server.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        EventCollector collector = new EventCollector(0, 100_000);
+        HistoryIndex history = new HistoryIndex();
+        collector.setHistory(history);
+        Proxy proxy = new Proxy(collector.getPort());
+        try {
+            sendsBufferedEventsInBatches(collector, proxy);
+            replaysFromLastAckAfterCut(collector, proxy);
+            dropsWhenBufferIsFull(collector, proxy);
+            forwardsFlapping(collector, proxy, history);
+            checkNoDuplicates(collector);
+        } catch (AssertionError e) {
+            System.err.println("FAILED " + e.getMessage());
+            System.exit(1);
+        } finally {
+            proxy.close();
+            collector.close();
+        }
+        System.out.println("EventAgentCollectorTest: all passed");
+    }
+
+    static void sendsBufferedEventsInBatches(EventCollector collector, Proxy proxy) throws InterruptedException {
+        EventAgent agent = agent("batching", proxy, 1000);
+        for (int i = 0; i < 600; i++) agent.onDeviceConnected(DISK);
+        long batches = MonitorMetrics.counter("collector.batches").sum();
+        agent.start();
+        check(await(() -> stored(collector, "batching") == 600), "600 buffered events stored, got " + stored(collector, "batching"));
+        long sent = MonitorMetrics.counter("collector.batches").sum() - batches;
+        // Batches hold up to 256 events
+        check(sent == 3, "600 events in 3 batches, got " + sent);
+        agent.close();
+    }
+
+    static void replaysFromLastAckAfterCut(EventCollector collector, Proxy proxy) throws InterruptedException {
+        EventAgent agent = agent("replay", proxy, 1000);
+        agent.start();
+        agent.onDeviceConnected(DISK);
+        check(await(() -> agent.getBufferedCount() == 0), "first event acknowledged");
+
+        proxy.holdAcks = true;
+        for (int i = 0; i < 50; i++) agent.onDeviceConnected(DISK);
+        check(await(() -> stored(collector, "replay") == 51), "collector stored events whose ACKs were lost");
+        check(agent.getBufferedCount() == 50, "agent still buffers unacknowledged events, got " + agent.getBufferedCount());
+
+        proxy.cut();
+        proxy.holdAcks = false;
+        agent.onDeviceDisconnected(DISK);
+        check(await(() -> agent.getBufferedCount() == 0), "buffer acknowledged after reconnect");
+        check(stored(collector, "replay") == 52, "each event stored once, got " + stored(collector, "replay"));
+        agent.close();
+    }
+
+    static void dropsWhenBufferIsFull(EventCollector collector, Proxy proxy) throws InterruptedException {
+        EventAgent agent = agent("full", proxy, 10);
+        for (int i = 0; i < 15; i++) agent.onDeviceConnected(DISK);
+        check(agent.getDroppedCount() == 5 && agent.getBufferedCount() == 10,
+                "full buffer drops new events, dropped " + agent.getDroppedCount() + ", buffered " + agent.getBufferedCount());
+        agent.start();
+        check(await(() -> stored(collector, "full") == 10), "buffered events delivered, got " + stored(collector, "full"));
+        check(agent.getDroppedCount() == 5, "drop count kept");
+        agent.close();
+    }
+
+    static void forwardsFlapping(EventCollector collector, Proxy proxy, HistoryIndex history) throws InterruptedException {
+        EventAgent agent = agent("flapping", proxy, 10);
+        agent.start();
+        agent.onDeviceFlapping(DISK, 6, 60000);
+        check(await(() -> stored(collector, "flapping") == 1), "flapping event stored");
+        List<EventCollector.Record> records = collector.queryDevice("0781:5567", "flapping", 0, Long.MAX_VALUE);
+        check(records.get(0).getKindName().equals("flapping"), "kind " + records.get(0).getKindName());
+        check(history.count(HistoryIndex.Key.SERIAL, "4C530001", "Flapping", 0, Long.MAX_VALUE) == 1,
+                "flapping indexed in the collector's history");
+        check(history.hosts(HistoryIndex.Key.SERIAL, "4C530001").size() == 4, "history lists every agent");
+        agent.close();
+    }
+
+    static void checkNoDuplicates(EventCollector collector) {
+        Set<String> seen = new HashSet<>();
+        for (EventCollector.Record r : collector.query(0, Long.MAX_VALUE)) {
+            check(seen.add(r.agentId + "#" + r.seq), "stored once: " + r.agentId + "#" + r.seq);
+        }
+    }
+
+    private static EventAgent agent(String id, Proxy proxy, int capacity) {
+        return new EventAgent(InetAddress.getLoopbackAddress().getHostAddress(), proxy.getPort(), id, capacity);
+    }
+
+    private static int stored(EventCollector collector, String agentId) {
+        return collector.queryDevice("0781:5567", agentId, 0, Long.MAX_VALUE).size();
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static void closeQuietly(Socket s) {
+        try {
+            s.close();
+        } catch (IOException ignored) {}
+    }
+
+    private static void check(boolean condition, String name) {
+        if (!condition) throw new AssertionError(name);
+        System.out.println("ok  " + name);
+    }
+}
@@ -0,0 +1,98 @@
+// HistoryIndexTest.java
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+// Loads a fixture log (a compressed rotated segment plus the active file) into a HistoryIndex the way the
+// GUI does, adds live events and events from a collector, and checks lastEvent, count and hosts by serial,
+// VID:PID and name. Lines appended after the recorded log length stand for events logged while loading:
+// they arrive live and must not be read from the file as well.
+//
+// Usage: java HistoryIndexTest   (exits with status 1 on the first failure)
+public class HistoryIndexTest {
+    private static final MyDevice DISK = new MyDevice("Cruzer Blade", "SanDisk", "0781:5567", "Mass Storage", "4C530001", "16 GB");
+    private static final MyDevice MOUSE = new MyDevice("USB Mouse", "Logitech", "046D:C077", "Human Interface Device (HID)", null, null);
+    // Whole seconds, as the text log has no milliseconds
+    private static final long T0 = 1_700_000_000_000L;
+    private static final long HOUR = 3_600_000L;
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("history-fixture").toFile();
+        try {
+            File segment = new File(dir, "usb_log-2023-11-13-001.txt.gz");
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(segment))) {
+                write(out, "Inserted", DISK, T0);
+                write(out, "Removed", DISK, T0 + HOUR);
+                write(out, "Inserted", MOUSE, T0 + HOUR);
+            }
+            File active = new File(dir, "usb_log.txt");
+            try (OutputStream out = new FileOutputStream(active)) {
+                out.write("USB Monitor started\n".getBytes(LogEntry.CHARSET));
+                write(out, "Inserted", DISK, T0 + 2 * HOUR);
+                write(out, "Flapping", DISK, T0 + 3 * HOUR);
+            }
+            long boundary = active.length();
+            // Logged while the index was loading, so the index receives it live
+            LogEntry live = new LogEntry(DISK, "Removed", T0 + 4 * HOUR);
+            Files.write(active.toPath(), (live.formatEntry() + "\n").getBytes(LogEntry.CHARSET), StandardOpenOption.APPEND);
+
+            HistoryIndex index = new HistoryIndex();
+            check(index.loadTextLog(segment) == 3, "segment events");
+            try (InputStream in = Files.newInputStream(active.toPath())) {
+                check(index.loadTextLog(in, boundary) == 2, "active log read up to the recorded length");
+            }
+            index.add(HistoryIndex.LOCAL_HOST, live);
+            index.addRecord(new EventCollector.Record("lab-pc",
+                    new EventFrames.Event(1, T0 + 5 * HOUR, EventFrames.CONNECTED, toDeviceInfo(DISK))));
+
+            HistoryIndex.Key serial = HistoryIndex.Key.SERIAL;
+            check(index.count(serial, "4C530001", null, Long.MIN_VALUE, Long.MAX_VALUE) == 6,
+                    "every disk event once, got " + index.count(serial, "4C530001", null, Long.MIN_VALUE, Long.MAX_VALUE));
+            check(index.count(serial, "4C530001", "Inserted", Long.MIN_VALUE, Long.MAX_VALUE) == 3, "disk insertions");
+            check(index.count(serial, "4C530001", "Inserted", T0 + HOUR, T0 + 2 * HOUR) == 1, "insertions in a window");
+            check(index.count(serial, "4C530001", "Flapping", Long.MIN_VALUE, Long.MAX_VALUE) == 1, "flapping episode");
+            check(index.lastEvent(serial, "4C530001", "Inserted") == T0 + 5 * HOUR, "last insertion from the collector");
+            check(index.lastEvent(serial, "4C530001", "Removed") == T0 + 4 * HOUR, "last removal from the live event");
+            check(index.lastEvent(serial, "4C530001", "Changed") == -1, "no such action");
+            check(index.lastEvent(serial, "UNKNOWN-SERIAL", null) == -1, "no such serial");
+            check(index.hosts(serial, "4C530001").equals(Arrays.asList("lab-pc", HistoryIndex.LOCAL_HOST)),
+                    "hosts " + index.hosts(serial, "4C530001"));
+
+            check(index.count(HistoryIndex.Key.VID_PID, "046d:c077", null, Long.MIN_VALUE, Long.MAX_VALUE) == 1,
+                    "VID:PID lookup ignores case");
+            check(index.lastEvent(HistoryIndex.Key.NAME, " usb mouse ", "Inserted") == T0 + HOUR, "name lookup normalized");
+            check(index.count(serial, "Unknown", null, Long.MIN_VALUE, Long.MAX_VALUE) == 0, "missing serial not indexed");
+            check(index.hosts(HistoryIndex.Key.NAME, "USB Mouse").equals(Arrays.asList(HistoryIndex.LOCAL_HOST)), "mouse seen locally only");
+
+            // A plain log loaded by file continues where the previous call stopped
+            check(index.loadTextLog(active) == 3 && index.loadTextLog(active) == 0, "plain log read once");
+        } catch (AssertionError e) {
+            System.err.println("FAILED " + e.getMessage());
+            System.exit(1);
+        } finally {
+            for (File file : dir.listFiles()) file.delete();
+            dir.delete();
+        }
+        System.out.println("HistoryIndexTest: all passed");
+    }
+
+    private static void write(OutputStream out, String action, MyDevice device, long timestamp) throws IOException {
+        out.write((new LogEntry(device, action, timestamp).formatEntry() + System.lineSeparator()).getBytes(LogEntry.CHARSET));
+    }
+
+    private static USBMonitor.DeviceInfo toDeviceInfo(MyDevice device) {
+        return new USBMonitor.DeviceInfo(device.getDeviceId(), device.getName(), device.getManufacturer(),
+                device.getSerialNumber(), device.getDeviceType(), device.getStorageCapacity());
+    }
+
+    private static void check(boolean condition, String name) {
+        if (!condition) throw new AssertionError(name);
+        System.out.println("ok  " + name);
+    }
+}
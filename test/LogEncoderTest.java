@@ -0,0 +1,92 @@
+// LogEncoderTest.java
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+// Checks that LogEncoder writes exactly what LogEntry.formatEntry() would, refuses lines that do not fit,
+// and allocates nothing per event once device bytes and action names are cached: the number the
+// benchmarks print as logEncoder.encode B/op, turned into a failure.
+//
+// Usage: java LogEncoderTest   (exits with status 1 on the first failure)
+public class LogEncoderTest {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    // Whole seconds, as the log has no milliseconds
+    private static final long T0 = 1_700_000_000_000L;
+
+    public static void main(String[] args) {
+        try {
+            LogEntry[] entries = entries(1000);
+            matchesFormatEntry(entries);
+            refusesWhenFull(entries[0]);
+            allocatesNothingPerEvent(entries);
+        } catch (AssertionError e) {
+            System.err.println("FAILED " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("LogEncoderTest: all passed");
+    }
+
+    static void matchesFormatEntry(LogEntry[] entries) {
+        LogEncoder encoder = new LogEncoder();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        for (int i = 0; i < 10; i++) {
+            // A new second on every line, so the cached prefix is rebuilt
+            LogEntry entry = new LogEntry(entries[i].getDevice(), entries[i].getAction(), T0 + i * 1000L);
+            buffer.clear();
+            check(encoder.encode(entry, buffer), "line " + i + " encoded");
+            String line = new String(buffer.array(), 0, buffer.position(), LogEntry.CHARSET);
+            check(line.equals(entry.formatEntry() + System.lineSeparator()), "line " + i + " matches formatEntry(): " + line);
+        }
+    }
+
+    static void refusesWhenFull(LogEntry entry) {
+        LogEncoder encoder = new LogEncoder();
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        check(!encoder.encode(entry, buffer) && buffer.position() == 0, "line that does not fit is not written");
+    }
+
+    static void allocatesNothingPerEvent(LogEntry[] entries) {
+        LogEncoder encoder = new LogEncoder();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        // The first pass caches every device's bytes and the action names. A round can still see a few
+        // one-off bytes while the loop is being compiled, so the best of several rounds must be 0.
+        encodeAll(encoder, entries, buffer, 1);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 10 && best > 0; round++) {
+            long before = THREADS.getThreadAllocatedBytes(thread);
+            encodeAll(encoder, entries, buffer, 100);
+            best = Math.min(best, THREADS.getThreadAllocatedBytes(thread) - before);
+        }
+        check(best == 0, "encode allocates 0 B/event, got " + (double) best / (entries.length * 100) + " B/event");
+    }
+
+    private static void encodeAll(LogEncoder encoder, LogEntry[] entries, ByteBuffer buffer, int passes) {
+        for (int p = 0; p < passes; p++) {
+            for (LogEntry entry : entries) {
+                if (!encoder.encode(entry, buffer)) {
+                    buffer.clear();
+                    encoder.encode(entry, buffer);
+                }
+            }
+        }
+    }
+
+    // Distinct devices and alternating actions in one second, so the timestamp prefix is built once
+    private static LogEntry[] entries(int count) {
+        LogEntry[] entries = new LogEntry[count];
+        for (int i = 0; i < count; i++) {
+            MyDevice device = new MyDevice("Disk " + i, "Vendor", String.format("0781:%04X", i), "Mass Storage",
+                    "SN" + i, i % 3 == 0 ? null : "16 GB");
+            entries[i] = new LogEntry(device, i % 2 == 0 ? "Inserted" : "Removed", T0);
+        }
+        return entries;
+    }
+
+    private static void check(boolean condition, String name) {
+        if (!condition) throw new AssertionError(name);
+        System.out.println("ok  " + name);
+    }
+}
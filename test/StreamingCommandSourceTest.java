@@ -0,0 +1,104 @@
+// StreamingCommandSourceTest.java
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Runs StreamingCommandSource against a stub shell script that prints udevadm-style property blocks,
+// then exits, and checks the sink calls: one rescan per burst of add events, removals by DEVPATH or
+// PRODUCT, interface events ignored, and a restart followed by a rescan.
+//
+// Usage: java StreamingCommandSourceTest   (needs /bin/sh; exits with status 1 on failure)
+public class StreamingCommandSourceTest {
+    private static final String SCRIPT =
+        // A hub and the device behind it arrive in one burst
+        "printf 'ACTION=add\\nDEVPATH=/devices/usb1/1-1\\nDEVTYPE=usb_device\\nPRODUCT=5e3/608/6060\\n\\n"
+        + "ACTION=add\\nDEVPATH=/devices/usb1/1-1/1-1.2\\nDEVTYPE=usb_device\\nID_VENDOR_ID=0781\\nID_MODEL_ID=5567\\n\\n'\n"
+        + "sleep 0.5\n"
+        + "printf 'ACTION=remove\\nDEVPATH=/devices/usb1/1-1/1-1.2:1.0\\nDEVTYPE=usb_interface\\n\\n"
+        // Known from its add event, no IDs in the remove event
+        + "ACTION=remove\\nDEVPATH=/devices/usb1/1-1/1-1.2\\nDEVTYPE=usb_device\\n\\n"
+        // Never seen before, identified by PRODUCT
+        + "ACTION=remove\\nDEVPATH=/devices/usb1/1-4\\nDEVTYPE=usb_device\\nPRODUCT=46d/c52b/1211\\n\\n'\n"
+        + "sleep 0.5\n";
+
+    // Records sink calls in order
+    private static class RecordingSink implements DeviceEventSink {
+        final List<String> calls = new ArrayList<>();
+
+        public synchronized void deviceLeft(String deviceId) {
+            calls.add("left " + deviceId);
+            notifyAll();
+        }
+
+        public synchronized boolean rescanRequested() {
+            calls.add("rescan");
+            notifyAll();
+            return false;
+        }
+
+        synchronized List<String> await(int count, long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long remaining;
+            while (calls.size() < count && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                wait(remaining);
+            }
+            return new ArrayList<>(calls);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (!new File("/bin/sh").canExecute()) {
+            System.out.println("StreamingCommandSourceTest: skipped, no /bin/sh");
+            return;
+        }
+        File script = File.createTempFile("udev-stub", ".sh");
+        script.deleteOnExit();
+        Files.write(script.toPath(), SCRIPT.getBytes(StandardCharsets.UTF_8));
+
+        RecordingSink sink = new RecordingSink();
+        StreamingCommandSource source = new StreamingCommandSource(Arrays.asList("/bin/sh", script.getPath()));
+        try {
+            check(source.start(sink), "source started");
+            // The script exits after about a second and is restarted after MIN_RESTART_DELAY_MS; the restarted
+            // script may already have added calls of its own
+            List<String> calls = sink.await(4, 5000);
+            check(calls.size() >= 4 && calls.subList(0, 4).equals(
+                    Arrays.asList("rescan", "left 0781:5567", "left 046D:C52B", "rescan")), "sink calls " + calls);
+            checkParseDeviceId();
+        } catch (AssertionError e) {
+            System.err.println("FAILED " + e.getMessage());
+            System.exit(1);
+        } finally {
+            source.stop();
+        }
+        System.out.println("StreamingCommandSourceTest: all passed");
+    }
+
+    private static void checkParseDeviceId() {
+        check("0781:5567".equals(StreamingCommandSource.parseDeviceId(properties("ID_VENDOR_ID=0781", "ID_MODEL_ID=5567"))),
+                "ID_VENDOR_ID/ID_MODEL_ID");
+        check("05E3:0608".equals(StreamingCommandSource.parseDeviceId(properties("PRODUCT=5e3/608/6060"))),
+                "PRODUCT without leading zeros");
+        check(StreamingCommandSource.parseDeviceId(properties("PRODUCT=garbage")) == null, "malformed PRODUCT");
+        check(StreamingCommandSource.parseDeviceId(properties("DEVPATH=/devices/usb1")) == null, "no IDs");
+    }
+
+    private static Map<String, String> properties(String... entries) {
+        Map<String, String> map = new HashMap<>();
+        for (String entry : entries) {
+            int eq = entry.indexOf('=');
+            map.put(entry.substring(0, eq), entry.substring(eq + 1));
+        }
+        return map;
+    }
+
+    private static void check(boolean condition, String name) {
+        if (!condition) throw new AssertionError(name);
+        System.out.println("ok  " + name);
+    }
+}
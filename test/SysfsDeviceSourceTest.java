@@ -0,0 +1,105 @@
+// SysfsDeviceSourceTest.java
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Scans a fixture directory laid out like /sys/bus/usb/devices with SysfsDeviceSource and checks the devices:
+// a root hub, a USB stick with a block device behind it, a composite HID device typed by its interfaces,
+// and entries that must be skipped (interface directories, a device without IDs).
+//
+// Usage: java SysfsDeviceSourceTest   (exits with status 1 on the first failure)
+public class SysfsDeviceSourceTest {
+    public static void main(String[] args) throws IOException {
+        File root = Files.createTempDirectory("sysfs-fixture").toFile();
+        try {
+            buildFixture(root);
+            Map<String, USBMonitor.DeviceInfo> devices = new HashMap<>();
+            for (USBMonitor.DeviceInfo device : new SysfsDeviceSource(root).scan()) {
+                devices.put(device.getDeviceId(), device);
+            }
+            check(devices.size() == 3, "three devices, got " + devices.keySet());
+
+            USBMonitor.DeviceInfo hub = devices.get("1D6B:0002");
+            check(hub != null && hub.getDeviceType().equals("USB Hub"), "root hub type");
+            check(hub.getSerialNumber().equals("0000:00:14.0"), "root hub serial");
+
+            USBMonitor.DeviceInfo stick = devices.get("0781:5567");
+            check(stick != null && stick.getDeviceType().equals("Mass Storage"), "stick type");
+            check(stick.getProductName().equals("Cruzer Blade") && stick.getManufacturer().equals("SanDisk"),
+                    "stick strings without trailing newline");
+            check("14 GB".equals(stick.getStorageCapacity()), "stick capacity from block size, got " + stick.getStorageCapacity());
+
+            USBMonitor.DeviceInfo receiver = devices.get("046D:C52B");
+            check(receiver != null && receiver.getDeviceType().equals("Human Interface Device (HID)"),
+                    "composite device typed by its interfaces");
+            check(receiver.getSerialNumber().equals("Unknown") && receiver.getStorageCapacity() == null,
+                    "missing serial and capacity");
+
+            try {
+                new SysfsDeviceSource(new File(root, "missing")).scan();
+                check(false, "missing root throws");
+            } catch (UncheckedIOException e) {
+                check(true, "missing root throws");
+            }
+        } catch (AssertionError e) {
+            System.err.println("FAILED " + e.getMessage());
+            System.exit(1);
+        } finally {
+            delete(root);
+        }
+        System.out.println("SysfsDeviceSourceTest: all passed");
+    }
+
+    private static void buildFixture(File root) throws IOException {
+        write(root, "usb1/idVendor", "1d6b\n");
+        write(root, "usb1/idProduct", "0002\n");
+        write(root, "usb1/bDeviceClass", "09\n");
+        write(root, "usb1/product", "EHCI Host Controller\n");
+        write(root, "usb1/serial", "0000:00:14.0\n");
+
+        write(root, "1-1/idVendor", "0781\n");
+        write(root, "1-1/idProduct", "5567\n");
+        write(root, "1-1/bDeviceClass", "00\n");
+        write(root, "1-1/manufacturer", "SanDisk\n");
+        write(root, "1-1/product", "Cruzer Blade\n");
+        write(root, "1-1/serial", "4C530001\n");
+        write(root, "1-1/1-1:1.0/bInterfaceClass", "08\n");
+        // 31266816 sectors of 512 bytes, just under 15 GiB
+        write(root, "1-1/1-1:1.0/host6/target6:0:0/6:0:0:0/block/sdb/size", "31266816\n");
+
+        write(root, "1-2/idVendor", "046d\n");
+        write(root, "1-2/idProduct", "c52b\n");
+        write(root, "1-2/bDeviceClass", "00\n");
+        write(root, "1-2/product", "USB Receiver\n");
+        write(root, "1-2/1-2:1.1/bInterfaceClass", "03\n");
+        write(root, "1-2/1-2:1.0/bInterfaceClass", "03\n");
+
+        // Interfaces are also listed at the top level, and a device may still be initializing
+        write(root, "1-1:1.0/bInterfaceClass", "08\n");
+        write(root, "1-3/product", "Half-enumerated\n");
+    }
+
+    private static void write(File root, String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) delete(child);
+        }
+        file.delete();
+    }
+
+    private static void check(boolean condition, String name) {
+        if (!condition) throw new AssertionError(name);
+        System.out.println("ok  " + name);
+    }
+}
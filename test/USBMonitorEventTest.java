@@ -0,0 +1,114 @@
+// USBMonitorEventTest.java
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Drives USBMonitor with a fake event source and a fake scan backend, and checks the USBEventListener
+// callbacks: the initial snapshot goes to initialize's callback before the event source starts and never to
+// the listeners, a connect after an arrival rescan, a change when a later
+// rescan finds new details (a capacity that was not there yet), nothing for an idle rescan, and a
+// disconnect from deviceLeft. Debouncing is off, so every change is announced at once.
+//
+// Usage: java USBMonitorEventTest   (exits with status 1 on the first failure)
+public class USBMonitorEventTest {
+    private static final USBMonitor.DeviceInfo HUB =
+            new USBMonitor.DeviceInfo("1D6B:0002", "Root Hub", "Linux", "Unknown", "USB Hub", null);
+    private static final USBMonitor.DeviceInfo DISK =
+            new USBMonitor.DeviceInfo("0781:5567", "Cruzer", "SanDisk", "4C530001", "Mass Storage", null);
+    private static final USBMonitor.DeviceInfo DISK_WITH_SIZE =
+            new USBMonitor.DeviceInfo("0781:5567", "Cruzer", "SanDisk", "4C530001", "Mass Storage", "16 GB");
+
+    // Scan backend returning whatever the test put there
+    private static class FakeDeviceSource implements DeviceSource {
+        volatile List<USBMonitor.DeviceInfo> devices = Collections.emptyList();
+
+        public String getName() { return "fake"; }
+        public List<USBMonitor.DeviceInfo> scan() { return devices; }
+    }
+
+    // Event source that only hands the sink to the test
+    private static class FakeEventSource implements DeviceEventSource {
+        volatile DeviceEventSink sink;
+        volatile boolean stopped;
+
+        public String getName() { return "fake events"; }
+
+        public boolean start(DeviceEventSink sink) {
+            this.sink = sink;
+            return true;
+        }
+
+        public void stop() { stopped = true; }
+    }
+
+    private static final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    public static void main(String[] args) {
+        FakeDeviceSource devices = new FakeDeviceSource();
+        FakeEventSource source = new FakeEventSource();
+        devices.devices = Collections.singletonList(HUB);
+        USBMonitor.setLibusbEnabled(false);
+        USBMonitor.setDeviceSources(Collections.singletonList(devices));
+        USBMonitor.setEventSource(source);
+        USBMonitor.setDebounce(0, 0, 0, 0);
+        USBMonitor.addEventListener(new USBMonitor.USBEventListener() {
+            public void onDeviceConnected(USBMonitor.DeviceInfo device) {
+                events.add("connected " + device.getDeviceId());
+            }
+            public void onDeviceDisconnected(USBMonitor.DeviceInfo device) {
+                events.add("disconnected " + device.getDeviceId());
+            }
+            public void onDeviceChanged(USBMonitor.DeviceInfo previous, USBMonitor.DeviceInfo current) {
+                events.add("changed " + current.getDeviceId() + " " + current.getStorageCapacity());
+            }
+        });
+
+        try {
+            List<String> present = new ArrayList<>();
+            USBMonitor.initialize(snapshot -> {
+                check(source.sink == null, "initial devices handed over before the event source starts");
+                for (USBMonitor.DeviceInfo device : snapshot.values()) present.add(device.getDeviceId());
+            });
+            check(present.equals(Collections.singletonList("1D6B:0002")), "initial devices " + present);
+            check(source.sink != null, "event source started");
+            check("initial snapshot");
+
+            devices.devices = Arrays.asList(HUB, DISK);
+            check(source.sink.rescanRequested(), "arrival rescan reports a change");
+            check("arrival", "connected 0781:5567");
+
+            devices.devices = Arrays.asList(HUB, DISK_WITH_SIZE);
+            check(source.sink.rescanRequested(), "follow-up rescan reports a change");
+            check("details after arrival", "changed 0781:5567 16 GB");
+
+            check(!source.sink.rescanRequested(), "idle rescan reports nothing");
+            check("idle rescan");
+
+            source.sink.deviceLeft("0781:5567");
+            check("removal", "disconnected 0781:5567");
+            source.sink.deviceLeft("0781:5567");
+            check("removal of unknown device");
+
+            USBMonitor.cleanup();
+            check(source.stopped, "event source stopped by cleanup");
+        } catch (AssertionError e) {
+            System.err.println("FAILED " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("USBMonitorEventTest: all passed");
+    }
+
+    private static void check(String name, String... expected) {
+        if (!events.equals(Arrays.asList(expected))) {
+            throw new AssertionError(name + ": got " + events + ", expected " + Arrays.toString(expected));
+        }
+        System.out.println("ok  " + name);
+        events.clear();
+    }
+
+    private static void check(boolean condition, String name) {
+        if (!condition) throw new AssertionError(name);
+        System.out.println("ok  " + name);
+    }
+}